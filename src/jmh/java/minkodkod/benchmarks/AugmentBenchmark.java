@@ -0,0 +1,71 @@
+package minkodkod.benchmarks;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.instance.Instance;
+import minkodkod.MinExtraOptions;
+import minkodkod.MinSolution;
+import minkodkod.MinSolver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures MinSolver.augment on the first minimal model of a spec, with its first 
+ * consistent fact, up to and including the first model of the augmentation (augment 
+ * itself only builds the iterator; the work happens in its first next()).
+ * 
+ * Every augmentation adds a selector to the shared solver, so the base iterator is
+ * rebuilt for each iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AugmentBenchmark {
+
+	@Param({"TEST_ALS", "GRAPH_COLOURING", "ACCESS_CONTROL", "CONFIGURATION"})
+	public String specName;
+
+	@Param({"1", "4", "16"})
+	public int scale;
+
+	@Param({"shared", "perIterator"})
+	public String mode;
+
+	private BenchmarkSpecs.Spec spec;
+	private MinSolver solver;
+	private Iterator<MinSolution> models;
+	private Instance fact;
+
+	@Setup(Level.Iteration)
+	public void setup() throws Exception {
+		spec = BenchmarkSpecs.spec(specName, scale);
+		MinExtraOptions extraOptions = new MinExtraOptions();
+		extraOptions.setSolverPerIterator("perIterator".equals(mode));
+		solver = BenchmarkSpecs.solver(extraOptions);
+		models = solver.solveAll(spec.formula, spec.bounds);
+		models.next();
+		fact = BenchmarkSpecs.firstFact(solver.getConsistentFacts(models));
+		if(fact == null)
+			throw new IllegalStateException("The first model has no consistent facts.");
+	}
+
+	@Benchmark
+	public MinSolution augment() throws Exception {
+		return solver.augment(spec.formula, models, fact).next();
+	}
+}
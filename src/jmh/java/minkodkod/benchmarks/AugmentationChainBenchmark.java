@@ -0,0 +1,139 @@
+package minkodkod.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.config.Options;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+import kodkod.instance.Tuple;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+import minkodkod.MinExtraOptions;
+import minkodkod.MinReporterToGatherSkolemBounds;
+import minkodkod.MinSATSolverFactory;
+import minkodkod.MinSolution;
+import minkodkod.MinSolver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the shared-solver design against MinExtraOptions.solverPerIterator() on deep
+ * augmentation chains: starting from the first minimal model, augment with a new edge, take 
+ * the first model of the augmentation, augment that, and so on, to the given depth. Then
+ * step through the whole chain round-robin, which forces a solver hand-off on every step
+ * in shared mode.
+ * 
+ * The spec is a directed graph on the given number of nodes in which every node has a 
+ * successor other than itself; any missing non-loop edge is a consistent fact.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AugmentationChainBenchmark {
+
+	@Param({"shared", "perIterator"})
+	public String mode;
+	
+	@Param({"4", "16"})
+	public int depth;
+	
+	@Param({"6"})
+	public int nodes;
+	
+	@Param({"4"})
+	public int rounds;
+	
+	private Formula formula;
+	private Bounds bounds;
+	private Relation edge;
+	
+	@Setup
+	public void setup() {
+		List<String> atoms = new ArrayList<String>();
+		for(int i = 0; i < nodes; i++)
+			atoms.add("N" + i);
+		
+		Universe universe = new Universe(atoms);
+		TupleFactory factory = universe.factory();
+		Relation node = Relation.unary("Node");
+		edge = Relation.binary("edge");
+		
+		bounds = new Bounds(universe);
+		TupleSet all = factory.allOf(1);
+		bounds.boundExactly(node, all);
+		bounds.bound(edge, all.product(all));
+		
+		Variable x = Variable.unary("x");
+		formula = x.join(edge).some().forAll(x.oneOf(node)).and(Expression.IDEN.intersection(edge).no());
+	}
+	
+	@Benchmark
+	public int augmentationChain() throws Exception {
+		Options options = new Options();
+		options.setSolver(new MinSATSolverFactory());
+		options.setReporter(new MinReporterToGatherSkolemBounds());
+		MinExtraOptions extraOptions = new MinExtraOptions();
+		extraOptions.setSolverPerIterator("perIterator".equals(mode));
+		MinSolver solver = new MinSolver(options, extraOptions);
+		
+		List<Iterator<MinSolution>> chain = new ArrayList<Iterator<MinSolution>>();
+		Iterator<MinSolution> current = solver.solveAll(formula, bounds);
+		MinSolution model = current.next();
+		chain.add(current);
+		
+		for(int d = 0; d < depth && model.instance() != null; d++) {
+			Instance fact = newEdge(model.instance());
+			if(fact == null)
+				break;
+			current = solver.augment(formula, current, fact);
+			model = current.next();
+			chain.add(current);
+		}
+		
+		int models = 0;
+		for(int r = 0; r < rounds; r++) {
+			for(Iterator<MinSolution> it : chain) {
+				if(it.hasNext() && it.next().instance() != null)
+					models++;
+			}
+		}
+		return models;
+	}
+	
+	/**
+	 * Returns an instance holding the first non-loop edge missing from the given model,
+	 * or null if there is none.
+	 */
+	private Instance newEdge(Instance model) {
+		TupleSet present = model.tuples(edge);
+		for(Tuple t : bounds.upperBound(edge)) {
+			if(t.atom(0).equals(t.atom(1)) || present.contains(t))
+				continue;
+			Instance fact = new Instance(bounds.universe());
+			fact.add(edge, bounds.universe().factory().setOf(t));
+			return fact;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,119 @@
+package minkodkod.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.config.Options;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+import minkodkod.MinExtraOptions;
+import minkodkod.MinReporterToGatherSkolemBounds;
+import minkodkod.MinSATSolverFactory;
+import minkodkod.MinSolver;
+import test.generator.GeneratedSpec;
+import test.generator.SpecGenerator;
+
+/**
+ * The specs the benchmarks run on, and the solver set-up they share.
+ */
+final class BenchmarkSpecs {
+	private BenchmarkSpecs() {}
+
+	/** The spec name for {@link #coloring}; the others are the names of SpecGenerator cases. */
+	static final String TEST_ALS = "TEST_ALS";
+
+	/**
+	 * Returns the named spec at the given scale: {@link #coloring} for TEST_ALS, or else
+	 * the SpecGenerator case of that name with default parameters, scaled to about scale
+	 * times the primary variables of test.als per relation solved for.
+	 */
+	static Spec spec(String name, int scale) {
+		if(TEST_ALS.equals(name))
+			return coloring(scale);
+
+		SpecGenerator generator = new SpecGenerator();
+		generator.setScale(scale);
+		GeneratedSpec spec = generator.generate(SpecGenerator.Case.valueOf(name));
+		return new Spec(spec.formula(), spec.bounds());
+	}
+
+	/**
+	 * resources/test.als scaled up: 2*scale elements, 2*scale colors (all of them one sigs,
+	 * so both sigs are exactly bounded and fully symmetric), and every color must be the
+	 * color of some element. Scale 1 is test.als itself.
+	 */
+	static Spec coloring(int scale) {
+		List<String> atoms = new ArrayList<String>();
+		for(int i = 0; i < 2 * scale; i++)
+			atoms.add("Element$" + i);
+		for(int i = 0; i < 2 * scale; i++)
+			atoms.add("Color$" + i);
+
+		Universe universe = new Universe(atoms);
+		TupleFactory factory = universe.factory();
+		Relation element = Relation.unary("this/Element");
+		Relation color = Relation.unary("this/Color");
+		Relation colorOf = Relation.binary("this/Element.color");
+
+		Bounds bounds = new Bounds(universe);
+		TupleSet elements = factory.range(factory.tuple("Element$0"), factory.tuple("Element$" + (2 * scale - 1)));
+		TupleSet colors = factory.range(factory.tuple("Color$0"), factory.tuple("Color$" + (2 * scale - 1)));
+		bounds.boundExactly(element, elements);
+		bounds.boundExactly(color, colors);
+		bounds.bound(colorOf, elements.product(colors));
+
+		Variable el = Variable.unary("el");
+		Variable c = Variable.unary("c");
+		Formula formula = colorOf.in(element.product(color))
+			.and(c.in(el.join(colorOf)).forSome(el.oneOf(element)).forAll(c.oneOf(color)));
+
+		return new Spec(formula, bounds);
+	}
+
+	/**
+	 * Returns a fresh solver with the options Aluminum is run with.
+	 */
+	static MinSolver solver(MinExtraOptions extraOptions) {
+		return new MinSolver(options(), extraOptions);
+	}
+
+	static Options options() {
+		Options options = new Options();
+		options.setSolver(new MinSATSolverFactory());
+		options.setReporter(new MinReporterToGatherSkolemBounds());
+		options.setSymmetryBreaking(20);
+		return options;
+	}
+
+	/**
+	 * Returns an instance holding the first tuple of the given consistent facts, or null if
+	 * there are none.
+	 */
+	static Instance firstFact(Instance consistentFacts) {
+		for(Relation r : consistentFacts.relations()) {
+			TupleSet tuples = consistentFacts.tuples(r);
+			if(tuples == null || tuples.isEmpty())
+				continue;
+			Instance fact = new Instance(consistentFacts.universe());
+			fact.add(r, consistentFacts.universe().factory().setOf(tuples.iterator().next()));
+			return fact;
+		}
+		return null;
+	}
+
+	static final class Spec {
+		final Formula formula;
+		final Bounds bounds;
+
+		Spec(Formula formula, Bounds bounds) {
+			this.formula = formula;
+			this.bounds = bounds;
+		}
+	}
+}
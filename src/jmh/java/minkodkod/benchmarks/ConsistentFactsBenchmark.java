@@ -0,0 +1,64 @@
+package minkodkod.benchmarks;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.instance.Instance;
+import minkodkod.MinExtraOptions;
+import minkodkod.MinSolution;
+import minkodkod.MinSolver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures MinSolver.getConsistentFacts on the first minimal model of a spec, from a
+ * fresh iterator each time (the iterator keeps the result for its model), and what the
+ * UI asks for per model: the consistent facts, then the CF list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConsistentFactsBenchmark {
+
+	@Param({"TEST_ALS", "GRAPH_COLOURING", "ACCESS_CONTROL", "CONFIGURATION"})
+	public String specName;
+
+	@Param({"1", "4", "16"})
+	public int scale;
+
+	private MinSolver solver;
+	private Iterator<MinSolution> models;
+
+	@Setup(Level.Invocation)
+	public void setup() {
+		BenchmarkSpecs.Spec spec = BenchmarkSpecs.spec(specName, scale);
+		solver = BenchmarkSpecs.solver(new MinExtraOptions());
+		models = solver.solveAll(spec.formula, spec.bounds);
+		models.next();
+	}
+
+	@Benchmark
+	public Instance consistentFacts() throws Exception {
+		return solver.getConsistentFacts(models);
+	}
+
+	@Benchmark
+	public String consistentFactsThenList() throws Exception {
+		solver.getConsistentFacts(models);
+		return solver.getCFList(models);
+	}
+}
@@ -0,0 +1,83 @@
+package minkodkod.benchmarks;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import minkodkod.MinExtraOptions;
+import minkodkod.MinSolution;
+import minkodkod.MinSolver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures MinSolutionIterator.next(): the first model (which includes translation) and
+ * the steady state, where each call finds a candidate, minimizes it and adds its cone
+ * restrictions. The steady-state iterator and its first model are set up before each
+ * measurement iteration; an iterator that runs out is restarted within the measurement,
+ * so at small scales, where iterators run out quickly, the steady state includes restarts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EnumerationBenchmark {
+
+	@Param({"TEST_ALS", "GRAPH_COLOURING", "ACCESS_CONTROL", "CONFIGURATION"})
+	public String specName;
+
+	@Param({"1", "4", "16"})
+	public int scale;
+
+	@Param({"classic", "cores"})
+	public String minimization;
+
+	private BenchmarkSpecs.Spec spec;
+
+	@Setup
+	public void setup() {
+		spec = BenchmarkSpecs.spec(specName, scale);
+	}
+
+	private MinExtraOptions extraOptions() {
+		MinExtraOptions extraOptions = new MinExtraOptions();
+		extraOptions.setCoreGuidedMinimization("cores".equals(minimization));
+		return extraOptions;
+	}
+
+	@Benchmark
+	public MinSolution firstModel() {
+		MinSolver solver = BenchmarkSpecs.solver(extraOptions());
+		return solver.solveAll(spec.formula, spec.bounds).next();
+	}
+
+	@State(Scope.Thread)
+	public static class Running {
+		Iterator<MinSolution> models;
+
+		@Setup(Level.Iteration)
+		public void start(EnumerationBenchmark benchmark) {
+			models = BenchmarkSpecs.solver(benchmark.extraOptions()).solveAll(benchmark.spec.formula, benchmark.spec.bounds);
+			models.next();
+		}
+	}
+
+	@Benchmark
+	public MinSolution nextModel(Running running) {
+		if(!running.models.hasNext())
+			running.start(this);
+		return running.models.next();
+	}
+}
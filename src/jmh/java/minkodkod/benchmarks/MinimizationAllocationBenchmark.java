@@ -0,0 +1,119 @@
+package minkodkod.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.config.Options;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+import minkodkod.MinExtraOptions;
+import minkodkod.MinReporterToGatherSkolemBounds;
+import minkodkod.MinSATSolverFactory;
+import minkodkod.MinSolution;
+import minkodkod.MinSolver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the allocation of steady-state enumeration: each invocation starts from an
+ * iterator that has already translated the spec and produced its first minimal model,
+ * and drains the rest of the models and their consistent facts. Translation is outside
+ * the measurement, so what is left is the minimization loop, cone restrictions and
+ * consistent-fact search.
+ *
+ * Run with the GC profiler to get allocation rates, e.g.
+ * <pre>gradle jmh -PjmhArgs="MinimizationAllocationBenchmark -prof gc"</pre>
+ * and compare gc.alloc.rate.norm (bytes per invocation) between versions.
+ *
+ * The spec is a directed graph on the given number of nodes in which every node has a
+ * successor other than itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MinimizationAllocationBenchmark {
+
+	@Param({"classic", "cores"})
+	public String mode;
+
+	@Param({"5", "6"})
+	public int nodes;
+
+	@Param({"true", "false"})
+	public boolean consistentFacts;
+
+	private Formula formula;
+	private Bounds bounds;
+
+	private MinSolver solver;
+	private Iterator<MinSolution> models;
+
+	@Setup
+	public void setup() {
+		List<String> atoms = new ArrayList<String>();
+		for(int i = 0; i < nodes; i++)
+			atoms.add("N" + i);
+
+		Universe universe = new Universe(atoms);
+		TupleFactory factory = universe.factory();
+		Relation node = Relation.unary("Node");
+		Relation edge = Relation.binary("edge");
+
+		bounds = new Bounds(universe);
+		TupleSet all = factory.allOf(1);
+		bounds.boundExactly(node, all);
+		bounds.bound(edge, all.product(all));
+
+		Variable x = Variable.unary("x");
+		formula = x.join(edge).some().forAll(x.oneOf(node)).and(Expression.IDEN.intersection(edge).no());
+	}
+
+	@Setup(Level.Invocation)
+	public void firstModel() {
+		Options options = new Options();
+		options.setSolver(new MinSATSolverFactory());
+		options.setReporter(new MinReporterToGatherSkolemBounds());
+		MinExtraOptions extraOptions = new MinExtraOptions();
+		extraOptions.setCoreGuidedMinimization("cores".equals(mode));
+
+		solver = new MinSolver(options, extraOptions);
+		models = solver.solveAll(formula, bounds);
+		models.next();
+	}
+
+	@Benchmark
+	public int remainingModels() throws Exception {
+		int count = 0;
+		while(models.hasNext()) {
+			MinSolution model = models.next();
+			if(!model.sat())
+				break;
+			if(consistentFacts)
+				solver.getConsistentFacts(models);
+			count++;
+		}
+		return count;
+	}
+}
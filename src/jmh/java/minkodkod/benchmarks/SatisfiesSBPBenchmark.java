@@ -0,0 +1,58 @@
+package minkodkod.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import minkodkod.MinExtraOptions;
+import minkodkod.MinSolution;
+import minkodkod.MinSolver;
+import minkodkod.engine.fol2sat.MinTranslation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures MinTranslation.satisfiesSBP on the propositional model of the first minimal
+ * model of a spec. It runs once per model found, and again per permutation when
+ * MinExtraOptions.setForceRespectSB() is set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SatisfiesSBPBenchmark {
+
+	@Param({"TEST_ALS", "GRAPH_COLOURING", "ACCESS_CONTROL", "CONFIGURATION"})
+	public String specName;
+
+	@Param({"1", "4", "16"})
+	public int scale;
+
+	private MinTranslation translation;
+	private int[] model;
+
+	@Setup
+	public void setup() {
+		BenchmarkSpecs.Spec spec = BenchmarkSpecs.spec(specName, scale);
+		MinSolver.MinSolutionIterator models = (MinSolver.MinSolutionIterator)
+			BenchmarkSpecs.solver(new MinExtraOptions()).solveAll(spec.formula, spec.bounds);
+		MinSolution first = models.next();
+		translation = models.getTranslation();
+		model = first.getPropositionalModel();
+	}
+
+	@Benchmark
+	public boolean satisfiesSBP() {
+		return translation.satisfiesSBP(model);
+	}
+}
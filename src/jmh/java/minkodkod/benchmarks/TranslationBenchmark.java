@@ -0,0 +1,50 @@
+package minkodkod.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import minkodkod.engine.fol2sat.MinTranslation;
+import minkodkod.engine.fol2sat.MinTranslator;
+import minkodkod.engine.fol2sat.TrivialFormulaException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures MinTranslator.translate: Skolemization, symmetry detection, the Boolean
+ * circuit, the SBP and the CNF handed to the SAT solver.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TranslationBenchmark {
+
+	@Param({"TEST_ALS", "GRAPH_COLOURING", "ACCESS_CONTROL", "CONFIGURATION"})
+	public String specName;
+
+	@Param({"1", "4", "16"})
+	public int scale;
+
+	private BenchmarkSpecs.Spec spec;
+
+	@Setup
+	public void setup() {
+		spec = BenchmarkSpecs.spec(specName, scale);
+	}
+
+	@Benchmark
+	public MinTranslation translate() throws TrivialFormulaException {
+		return MinTranslator.translate(spec.formula, spec.bounds, BenchmarkSpecs.options());
+	}
+}
@@ -0,0 +1,135 @@
+package minkodkod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import minkodkod.engine.fol2sat.MinTranslation;
+
+// ALUMINUM: New class. Makes repeated exploration paths cheap.
+
+/**
+ * The histories of augmented iterators, keyed by translation and augments, with LRU
+ * eviction. The minimal models of an augmentation depend only on the translation and
+ * the augments (the base model's true primary variables plus the facts added), so
+ * augmenting the same model by the same facts again can replay what the first
+ * iterator found: its models, in order, and the cone restrictions each one added.
+ * A replaying iterator only calls the SAT solver once it has replayed them all, and
+ * then extends the history for the next one.
+ * <p>
+ * The histories' solutions refer to their translations, so a translation (and its SAT
+ * solver) stays reachable while the cache has a history for it: until it is evicted,
+ * or MinSolver.free() clears the cache.
+ */
+final class AugmentationCache {
+	private final Map<Key, History> histories;
+	private long hits = 0;
+	private long misses = 0;
+
+	AugmentationCache(final int capacity) {
+		this.histories = new LinkedHashMap<Key, History>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Key, History> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the history of the augmentation of the given translation by the given
+	 * augments, counting a hit, or null, counting a miss.
+	 */
+	synchronized History get(MinTranslation translation, int[] augments) {
+		final History history = histories.get(new Key(translation, augments));
+		if(history == null)
+			misses++;
+		else
+			hits++;
+		return history;
+	}
+
+	/**
+	 * Records the history of the augmentation of the given translation by the given augments.
+	 */
+	synchronized void put(MinTranslation translation, int[] augments, History history) {
+		histories.put(new Key(translation, augments), history);
+	}
+
+	/**
+	 * Forgets every history (but not the hit and miss counts).
+	 */
+	synchronized void clear() {
+		histories.clear();
+	}
+
+	synchronized long hits() {
+		return hits;
+	}
+
+	synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * The solutions an augmented iterator returned, in order, each with the cone
+	 * restriction clauses it added. Ends with the unsatisfiable solution once an
+	 * iterator has run out.
+	 */
+	static final class History {
+		private final List<MinSolution> solutions = new ArrayList<MinSolution>();
+		private final List<List<int[]>> coneClauses = new ArrayList<List<int[]>>();
+
+		/**
+		 * Returns the index-th solution, or null if it is not known yet.
+		 */
+		synchronized MinSolution solution(int index) {
+			return index < solutions.size() ? solutions.get(index) : null;
+		}
+
+		/**
+		 * Returns the cone restriction clauses the index-th solution added.
+		 * @requires solution(index) != null
+		 */
+		synchronized List<int[]> coneClauses(int index) {
+			return coneClauses.get(index);
+		}
+
+		/**
+		 * Records the given solution as the index-th, with the cone clauses it added,
+		 * if the history has exactly index solutions (that is, the caller has replayed
+		 * them all and found the next one first).
+		 */
+		synchronized void record(int index, MinSolution solution, List<int[]> clauses) {
+			if(solutions.size() != index)
+				return;
+			if(index > 0 && !solutions.get(index - 1).sat())
+				return;
+			solutions.add(solution);
+			coneClauses.add(new ArrayList<int[]>(clauses));
+		}
+	}
+
+	private static final class Key {
+		private final MinTranslation translation;
+		private final int[] augments;
+
+		Key(MinTranslation translation, int[] augments) {
+			this.translation = translation;
+			this.augments = augments;
+		}
+
+		public int hashCode() {
+			return 31 * System.identityHashCode(translation) + Arrays.hashCode(augments);
+		}
+
+		public boolean equals(Object o) {
+			if(!(o instanceof Key))
+				return false;
+			final Key other = (Key) o;
+			return translation == other.translation && Arrays.equals(augments, other.augments);
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package minkodkod;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import kodkod.ast.Formula;
+import kodkod.instance.Bounds;
+import kodkod.util.ints.IntBitSet;
+import minkodkod.MinSolver.MinSolutionIterator;
+import minkodkod.engine.fol2sat.MinTranslation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// ALUMINUM: New class. Hides the latency of augment() during interactive exploration.
+
+/**
+ * Precomputes, in the background, what the user is likely to ask for next about the
+ * latest model: its consistent facts, then the first minimal model of the augmentation
+ * by each of them (up to a limit). Everything runs on replicas of the translation's
+ * solver, on a bounded pool of daemon threads, so the iterators the user works with
+ * are never touched. Only the latest model is speculated on: a new model cancels
+ * what is left of the previous speculation, expiring its SAT calls in progress.
+ *
+ * MinSolver.augment() claims a precomputed augmentation if there is one for its
+ * arguments; getConsistentFacts() takes the precomputed facts.
+ */
+final class AugmentationSpeculator {
+	private final static Logger logger = LoggerFactory.getLogger(AugmentationSpeculator.class);
+
+	private final MinSolver minSolver;
+	private final ExecutorService pool;
+	private final int limit;
+
+	/* idle consistent-fact replicas (SBP off) of each translation */
+	private final Map<MinTranslation, List<MinSATSolver>> replicas = new WeakHashMap<MinTranslation, List<MinSATSolver>>();
+
+	/* the speculation on the latest model, or null; guarded by this */
+	private Speculation current = null;
+
+	AugmentationSpeculator(MinSolver minSolver, int workers, int limit) {
+		this.minSolver = minSolver;
+		this.limit = limit;
+		this.pool = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "aluminum-speculation");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Cancels the current speculation and starts one on the last model of the given
+	 * iterator.
+	 * @param formula the formula augmentations are made from
+	 * @param bounds the (skolem) bounds augmentations are made from
+	 */
+	synchronized void speculate(MinSolutionIterator base, Formula formula, Bounds bounds) {
+		cancel();
+		current = new Speculation(base, formula, bounds, base.lastSatSolutionFound.getPropositionalModel());
+		current.consistentFacts = pool.submit(current.new ConsistentFacts());
+	}
+
+	/**
+	 * Cancels the current speculation, if any.
+	 */
+	synchronized void cancel() {
+		if(current != null)
+			current.cancel();
+		current = null;
+	}
+
+	/**
+	 * Returns the consistent facts of the given model of the given iterator, if they are
+	 * being speculated on (waiting for them if need be), or null.
+	 */
+	int[] consistentFacts(MinSolutionIterator base, int[] model) {
+		final Speculation speculation = speculationOn(base, model);
+		if(speculation == null)
+			return null;
+		final int[] facts = await(speculation.consistentFacts);
+		return (facts == null) ? null : facts.clone();
+	}
+
+	/**
+	 * Returns the precomputed augmentation of the given iterator's last model by the
+	 * given augments, if there is one, with its first model ready; otherwise null. A
+	 * precomputed augmentation is handed out once. If it is being computed, waits for
+	 * it; if it has not been started, drops it.
+	 * @param augments the true primary variables of the model plus the fact to add
+	 */
+	MinSolutionIterator claim(MinSolutionIterator base, List<Integer> augments) {
+		final int[] model = (base.lastSatSolutionFound == null) ? null : base.lastSatSolutionFound.getPropositionalModel();
+		final Speculation speculation = speculationOn(base, model);
+		if(speculation == null)
+			return null;
+
+		// The augments must be the model's true variables plus one fact.
+		final int n = speculation.numPrimaryVariables;
+		final IntBitSet distinct = new IntBitSet(n + 1);
+		int fact = 0;
+		for(int v : augments) {
+			if(v <= 0 || v > n)
+				return null;
+			if(!distinct.add(v) || model[v - 1] > 0)
+				continue;
+			if(fact != 0)
+				return null;
+			fact = v;
+		}
+		int positives = 0;
+		for(int i = 1; i <= n; i++) {
+			if(model[i - 1] > 0)
+				positives++;
+		}
+		if(fact == 0 || distinct.size() != positives + 1)
+			return null;
+
+		final Future<MinSolutionIterator> augmentation;
+		synchronized(speculation) {
+			augmentation = speculation.augmentations.remove(fact);
+		}
+		if(augmentation == null)
+			return null;
+		if(augmentation.cancel(false))
+			return null; // not started
+		return await(augmentation);
+	}
+
+	/**
+	 * Returns the current speculation if it is on the given model of the given iterator.
+	 */
+	private synchronized Speculation speculationOn(MinSolutionIterator base, int[] model) {
+		if(current == null || current.base != base || current.model != model || model == null)
+			return null;
+		return current;
+	}
+
+	/**
+	 * Returns the value of the given task, or null if it was cancelled or failed.
+	 */
+	private static <T> T await(Future<T> task) {
+		boolean interrupted = false;
+		try {
+			while(true) {
+				try {
+					return task.get();
+				} catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch(ExecutionException e) {
+			logger.debug("speculation failed", e.getCause());
+			return null;
+		} catch(CancellationException e) {
+			return null;
+		} finally {
+			if(interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	private MinSATSolver borrowReplica(MinTranslation translation) {
+		synchronized(replicas) {
+			final List<MinSATSolver> idle = replicas.get(translation);
+			if(idle != null && !idle.isEmpty())
+				return idle.remove(idle.size() - 1);
+		}
+		final MinSATSolver replica = translation.cnf().replicate();
+		replica.deactivateSBP();
+		return replica;
+	}
+
+	private void returnReplica(MinTranslation translation, MinSATSolver replica) {
+		synchronized(replicas) {
+			List<MinSATSolver> idle = replicas.get(translation);
+			if(idle == null) {
+				idle = new ArrayList<MinSATSolver>();
+				replicas.put(translation, idle);
+			}
+			idle.add(replica);
+		}
+	}
+
+	/**
+	 * The work on one model.
+	 */
+	private final class Speculation {
+		final MinSolutionIterator base;
+		final Formula formula;
+		final Bounds bounds;
+		final int[] model;
+		final MinTranslation translation;
+		final int numPrimaryVariables;
+
+		volatile boolean cancelled = false;
+		Future<int[]> consistentFacts;
+		/* the augmentations by each fact, and the solvers in use for this speculation; guarded by this */
+		final Map<Integer, Future<MinSolutionIterator>> augmentations = new HashMap<Integer, Future<MinSolutionIterator>>();
+		final List<MinSATSolver> busy = new ArrayList<MinSATSolver>();
+
+		Speculation(MinSolutionIterator base, Formula formula, Bounds bounds, int[] model) {
+			this.base = base;
+			this.formula = formula;
+			this.bounds = bounds;
+			this.model = model;
+			this.translation = base.getTranslation();
+			this.numPrimaryVariables = translation.numPrimaryVariables();
+		}
+
+		void cancel() {
+			cancelled = true;
+			synchronized(this) {
+				consistentFacts.cancel(false);
+				for(Future<MinSolutionIterator> augmentation : augmentations.values())
+					augmentation.cancel(false);
+				augmentations.clear();
+				for(MinSATSolver solver : busy)
+					solver.expire();
+			}
+		}
+
+		/**
+		 * Registers a solver about to be used, unless the speculation is cancelled.
+		 */
+		synchronized boolean start(MinSATSolver solver) {
+			if(cancelled)
+				return false;
+			solver.resume();
+			busy.add(solver);
+			return true;
+		}
+
+		/**
+		 * Unregisters a solver, and undoes cancel()'s expire() on it, for its next user.
+		 */
+		synchronized void finish(MinSATSolver solver) {
+			busy.remove(solver);
+			solver.resume();
+		}
+
+		/**
+		 * Computes the model's consistent facts on a replica, then queues the augmentations.
+		 */
+		final class ConsistentFacts implements Callable<int[]> {
+			public int[] call() throws Exception {
+				final IntStack positives = new IntStack();
+				final IntStack candidates = new IntStack();
+				for(int i = 1; i <= numPrimaryVariables; i++) {
+					if(model[i - 1] > 0)
+						positives.push(i);
+					else
+						candidates.push(i);
+				}
+
+				final IntBitSet found = new IntBitSet(numPrimaryVariables + 1);
+				final MinSATSolver replica = borrowReplica(translation);
+				if(!start(replica)) {
+					returnReplica(translation, replica);
+					return null;
+				}
+				try {
+					ParallelConsistentFacts.compute(new MinSATSolver[] { replica }, null, positives, candidates, numPrimaryVariables, found);
+				} finally {
+					finish(replica);
+					returnReplica(translation, replica);
+				}
+				if(cancelled)
+					return null;
+
+				final int[] facts = found.toArray();
+				synchronized(Speculation.this) {
+					for(int ii = 0; ii < facts.length && ii < limit && !cancelled; ii++) {
+						final ArrayList<Integer> augments = new ArrayList<Integer>(positives.size() + 1);
+						for(int jj = 0; jj < positives.size(); jj++)
+							augments.add(positives.get(jj));
+						augments.add(facts[ii]);
+						augmentations.put(facts[ii], pool.submit(new Augmentation(augments)));
+					}
+				}
+				return facts;
+			}
+		}
+
+		/**
+		 * Builds an augmentation with a solver of its own and computes its first model.
+		 */
+		final class Augmentation implements Callable<MinSolutionIterator> {
+			private final ArrayList<Integer> augments;
+
+			Augmentation(ArrayList<Integer> augments) {
+				this.augments = augments;
+			}
+
+			public MinSolutionIterator call() {
+				if(cancelled)
+					return null;
+				final MinSolutionIterator iterator = minSolver.speculativeAugmentation(formula, bounds, base, augments);
+				final MinSATSolver solver = iterator.ownSolver();
+				if(!start(solver))
+					return null;
+				try {
+					iterator.prefetch();
+				} finally {
+					finish(solver);
+				}
+				if(cancelled)
+					return null;
+				if(logger.isDebugEnabled())
+					logger.debug("precomputed augmentation by "+augments.get(augments.size() - 1));
+				return iterator;
+			}
+		}
+	}
+}
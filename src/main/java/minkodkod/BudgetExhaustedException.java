@@ -0,0 +1,20 @@
+package minkodkod;
+
+// ALUMINUM: New class.
+
+/**
+ * Indicates that a SAT call gave up because the budget of the solving task (its
+ * deadline or conflict limit) ran out, or because the task was cancelled.
+ * MinSolutionIterator catches it and returns what it has found so far.
+ */
+public final class BudgetExhaustedException extends RuntimeException {
+
+	private static final long serialVersionUID = -3466409211950260157L;
+
+	/**
+	 * Constructs a budget exhausted exception with the given message.
+	 */
+	BudgetExhaustedException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,150 @@
+package minkodkod;
+
+import java.util.Arrays;
+
+// ALUMINUM: New class. Replaces the Set<int[]> of SBP clauses MinSATSolver used to keep,
+// which compared arrays by identity and so never found a duplicate.
+
+/**
+ * A set of clauses in canonical form: literals sorted, repeated literals dropped. The
+ * clauses are packed one after another in a single int array (length, then literals),
+ * and found through an open-addressing table of their offsets, so the set allocates
+ * nothing per clause. Tautologies (clauses with a literal and its negation) are never
+ * added. Not thread-safe: a solver and its replicas each have a copy().
+ */
+public final class ClauseSet {
+	/* the clauses, each as its length followed by its sorted literals */
+	private int[] arena = new int[64];
+	private int used = 0;
+	/* slots[i] is 1 + the offset of a clause in arena, or 0 if free; hashes[i] its hash */
+	private int[] slots = new int[16];
+	private int[] hashes = new int[16];
+	private int size = 0;
+	/* the canonical form of the clause being added */
+	private int[] canonical = new int[16];
+
+	/**
+	 * Returns the number of clauses in the set.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds the clause with the given literals, in any order, unless it is a tautology or
+	 * the set has it already (up to order and repeated literals).
+	 * @return true if the clause was added
+	 */
+	public boolean add(int[] lits) {
+		final int length = canonicalize(lits);
+		if(length < 0)
+			return false;
+
+		int hash = length;
+		for(int ii = 0; ii < length; ii++)
+			hash = hash * 31 + canonical[ii];
+		hash ^= (hash >>> 16);
+
+		final int mask = slots.length - 1;
+		int slot = hash & mask;
+		while(slots[slot] != 0) {
+			if(hashes[slot] == hash && matches(slots[slot] - 1, length))
+				return false;
+			slot = (slot + 1) & mask;
+		}
+
+		if(used + length + 1 > arena.length)
+			arena = Arrays.copyOf(arena, Math.max(arena.length * 2, used + length + 1));
+		arena[used] = length;
+		System.arraycopy(canonical, 0, arena, used + 1, length);
+		slots[slot] = used + 1;
+		hashes[slot] = hash;
+		used += length + 1;
+
+		if(++size * 2 > slots.length)
+			grow();
+		return true;
+	}
+
+	/**
+	 * Returns a set with the same clauses as this one, which changes independently of it.
+	 */
+	public ClauseSet copy() {
+		final ClauseSet copy = new ClauseSet();
+		copy.arena = Arrays.copyOf(arena, arena.length);
+		copy.used = used;
+		copy.slots = slots.clone();
+		copy.hashes = hashes.clone();
+		copy.size = size;
+		return copy;
+	}
+
+	/**
+	 * Returns true if the given literals contain a literal and its negation.
+	 */
+	public static boolean isTautology(int[] lits) {
+		final int[] sorted = lits.clone();
+		Arrays.sort(sorted);
+		for(int ii = 0; ii < sorted.length && sorted[ii] < 0; ii++) {
+			if(Arrays.binarySearch(sorted, ii + 1, sorted.length, -sorted[ii]) >= 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Puts the sorted, distinct literals of the given clause in this.canonical.
+	 * @return their number, or -1 if the clause is a tautology
+	 */
+	private int canonicalize(int[] lits) {
+		if(canonical.length < lits.length)
+			canonical = new int[Math.max(canonical.length * 2, lits.length)];
+		System.arraycopy(lits, 0, canonical, 0, lits.length);
+		Arrays.sort(canonical, 0, lits.length);
+
+		int length = 0;
+		for(int ii = 0; ii < lits.length; ii++) {
+			if(length == 0 || canonical[ii] != canonical[length - 1])
+				canonical[length++] = canonical[ii];
+		}
+		// Negative literals come first; look for the negation of each among the positive ones.
+		for(int ii = 0; ii < length && canonical[ii] < 0; ii++) {
+			if(Arrays.binarySearch(canonical, ii + 1, length, -canonical[ii]) >= 0)
+				return -1;
+		}
+		return length;
+	}
+
+	/**
+	 * Returns true if the clause at the given offset in arena is this.canonical[0..length).
+	 */
+	private boolean matches(int offset, int length) {
+		if(arena[offset] != length)
+			return false;
+		for(int ii = 0; ii < length; ii++) {
+			if(arena[offset + 1 + ii] != canonical[ii])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Doubles the table, re-placing every clause by its stored hash.
+	 */
+	private void grow() {
+		final int[] oldSlots = slots;
+		final int[] oldHashes = hashes;
+		slots = new int[oldSlots.length * 2];
+		hashes = new int[oldSlots.length * 2];
+		final int mask = slots.length - 1;
+		for(int ii = 0; ii < oldSlots.length; ii++) {
+			if(oldSlots[ii] == 0)
+				continue;
+			int slot = oldHashes[ii] & mask;
+			while(slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			slots[slot] = oldSlots[ii];
+			hashes[slot] = oldHashes[ii];
+		}
+	}
+}
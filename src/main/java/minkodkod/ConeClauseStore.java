@@ -0,0 +1,190 @@
+package minkodkod;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.sat4j.specs.IConstr;
+
+// ALUMINUM: New class. Replaces the Set<Set<Integer>> of cone-restriction clauses an iterator
+// used to keep, which only caught exact duplicates.
+
+/**
+ * The cone-restriction clauses of one iterator, as sorted int arrays with an occurrence
+ * list per literal. A clause is only worth adding to the SAT solver if no clause in the
+ * store subsumes it (is a subset of it); once added, it makes every clause it subsumes
+ * redundant, and those are retired from the store so the caller can remove them from
+ * the solver. This keeps the clause database from growing with duplicate and permuted
+ * cone restrictions over long enumerations.
+ */
+public final class ConeClauseStore {
+	/* clauses[id] is a sorted clause, or null once retired; constraints[id] its constraint in the solver */
+	private int[][] clauses = new int[16][];
+	private IConstr[] constraints = new IConstr[16];
+	private int slots = 0;
+	private int live = 0;
+	/* whether the store has the empty clause, which subsumes every clause */
+	private boolean hasEmpty = false;
+
+	/* occurrences[position(lit)] are the ids of the live clauses containing lit */
+	private IntStack[] occurrences = new IntStack[0];
+
+	/* per-clause hit counters for the subsumption check; all zero between calls */
+	private int[] hits = new int[16];
+	private final IntStack touched = new IntStack();
+
+	/**
+	 * Returns a sorted copy of the given literals, in the form the store expects.
+	 */
+	public static int[] sorted(int[] lits) {
+		int[] result = lits.clone();
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Returns the number of clauses in the store.
+	 */
+	public int size() {
+		return live;
+	}
+
+	/**
+	 * Returns true if some clause in the store is a subset of the given one (in particular,
+	 * if the store already holds it).
+	 * @requires clause is sorted
+	 */
+	public boolean subsumes(int[] clause) {
+		if(hasEmpty)
+			return true;
+
+		boolean found = false;
+		for(int i = 0; i < clause.length && !found; i++) {
+			IntStack ids = occurrences(clause[i]);
+			if(ids == null)
+				continue;
+			for(int j = 0; j < ids.size(); j++) {
+				int id = ids.get(j);
+				if(hits[id]++ == 0)
+					touched.push(id);
+				if(hits[id] == clauses[id].length) {
+					found = true;
+					break;
+				}
+			}
+		}
+
+		for(int i = 0; i < touched.size(); i++)
+			hits[touched.get(i)] = 0;
+		touched.clear();
+		return found;
+	}
+
+	/**
+	 * Adds the given clause to the store and retires every clause it subsumes, adding their
+	 * constraints (where not null) to retired.
+	 * @requires clause is sorted and !subsumes(clause)
+	 * @param clause the clause
+	 * @param constraint the clause's constraint in the solver
+	 * @param retired the list the constraints of retired clauses are added to
+	 */
+	public void add(int[] clause, IConstr constraint, List<IConstr> retired) {
+		retireSupersetsOf(clause, retired);
+
+		if(slots == clauses.length) {
+			clauses = Arrays.copyOf(clauses, slots * 2);
+			constraints = Arrays.copyOf(constraints, slots * 2);
+			hits = Arrays.copyOf(hits, slots * 2);
+		}
+		final int id = slots++;
+		clauses[id] = clause;
+		constraints[id] = constraint;
+		live++;
+
+		if(clause.length == 0)
+			hasEmpty = true;
+		for(int lit : clause) {
+			final int position = position(lit);
+			if(position >= occurrences.length)
+				occurrences = Arrays.copyOf(occurrences, Math.max(position + 1, occurrences.length * 2));
+			if(occurrences[position] == null)
+				occurrences[position] = new IntStack(4);
+			occurrences[position].push(id);
+		}
+	}
+
+	/**
+	 * Retires every clause in the store, adding their constraints (where not null) to retired.
+	 * @param retired the list the constraints of retired clauses are added to
+	 */
+	public void clear(List<IConstr> retired) {
+		for(int id = 0; id < slots; id++) {
+			if(clauses[id] != null)
+				retire(id, retired);
+		}
+		slots = 0;
+		hasEmpty = false;
+	}
+
+	/**
+	 * Retires the clauses that are supersets of the given one.
+	 */
+	private void retireSupersetsOf(int[] clause, List<IConstr> retired) {
+		if(clause.length == 0) {
+			for(int id = 0; id < slots; id++) {
+				if(clauses[id] != null)
+					retire(id, retired);
+			}
+			return;
+		}
+
+		// Every superset contains the literal with the fewest occurrences.
+		IntStack candidates = null;
+		for(int lit : clause) {
+			IntStack ids = occurrences(lit);
+			if(ids == null || ids.isEmpty())
+				return;
+			if(candidates == null || ids.size() < candidates.size())
+				candidates = ids;
+		}
+
+		for(int j = candidates.size() - 1; j >= 0; j--) {
+			final int id = candidates.get(j);
+			if(clauses[id].length > clause.length && subset(clause, clauses[id]))
+				retire(id, retired);
+		}
+	}
+
+	private void retire(int id, List<IConstr> retired) {
+		for(int lit : clauses[id])
+			occurrences[position(lit)].remove(id);
+		if(constraints[id] != null)
+			retired.add(constraints[id]);
+		clauses[id] = null;
+		constraints[id] = null;
+		live--;
+	}
+
+	/**
+	 * Returns true if the sorted array a is a subset of the sorted array b.
+	 */
+	private static boolean subset(int[] a, int[] b) {
+		int j = 0;
+		for(int i = 0; i < a.length; i++) {
+			while(j < b.length && b[j] < a[i])
+				j++;
+			if(j == b.length || b[j] != a[i])
+				return false;
+			j++;
+		}
+		return true;
+	}
+
+	private IntStack occurrences(int lit) {
+		final int position = position(lit);
+		return position < occurrences.length ? occurrences[position] : null;
+	}
+
+	private static int position(int lit) {
+		return lit > 0 ? 2 * lit : -2 * lit + 1;
+	}
+}
@@ -0,0 +1,107 @@
+package minkodkod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// ALUMINUM: New class. A diagnostics trace that costs nothing until it is switched on.
+
+/**
+ * A ring buffer of the latest solver events, for looking back at what a run did without
+ * logging every step. Off by default: while off, recording an event is one volatile
+ * read. Once enabled, each event takes a preallocated slot (a constant name, two numbers
+ * and the time), so recording does not allocate; events are only turned into text by
+ * dump(). Can be switched on and off at any time, from any thread.
+ * <p>
+ * The events, with their two numbers:
+ * <ul>
+ * <li>clause: literals, clauses in the solver (original CNF)
+ * <li>sbp-clause: literals, SBP clauses in the solver
+ * <li>scoped-clause: literals, scope (cone restrictions and other guarded clauses)
+ * <li>solve: assumptions (with selectors), 1 if satisfiable else 0
+ * <li>claim: cone scope, cone clauses of the iterator taking the solver
+ * <li>model: true primary variables, SAT calls made to minimize it
+ * </ul>
+ */
+public final class DiagnosticTrace {
+	private static volatile Ring ring = null;
+
+	private DiagnosticTrace() {}
+
+	/**
+	 * Starts recording the given number of latest events, dropping any recorded so far.
+	 * @throws IllegalArgumentException - capacity < 1
+	 */
+	public static void enable(int capacity) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		ring = new Ring(capacity);
+	}
+
+	/**
+	 * Stops recording and drops the events recorded.
+	 */
+	public static void disable() {
+		ring = null;
+	}
+
+	/**
+	 * Returns true if events are being recorded.
+	 */
+	public static boolean enabled() {
+		return ring != null;
+	}
+
+	/**
+	 * Returns the events recorded, oldest first, one line each: the nanoseconds since the
+	 * trace was enabled, the event, and its two numbers. Empty if the trace is off.
+	 */
+	public static List<String> dump() {
+		final Ring r = ring;
+		return (r == null) ? new ArrayList<String>(0) : r.lines();
+	}
+
+	/**
+	 * Records an event, if the trace is on.
+	 * @param event one of the constant names listed in the class comment
+	 */
+	static void record(String event, long a, long b) {
+		final Ring r = ring;
+		if(r != null)
+			r.add(event, a, b);
+	}
+
+	private static final class Ring {
+		private final long start = System.nanoTime();
+		private final String[] events;
+		private final long[] times;
+		private final long[] as;
+		private final long[] bs;
+		/* the number of events ever recorded; the latest is at (recorded - 1) % capacity */
+		private long recorded = 0;
+
+		Ring(int capacity) {
+			events = new String[capacity];
+			times = new long[capacity];
+			as = new long[capacity];
+			bs = new long[capacity];
+		}
+
+		synchronized void add(String event, long a, long b) {
+			final int slot = (int) (recorded++ % events.length);
+			events[slot] = event;
+			times[slot] = System.nanoTime() - start;
+			as[slot] = a;
+			bs[slot] = b;
+		}
+
+		synchronized List<String> lines() {
+			final int count = (int) Math.min(recorded, events.length);
+			final List<String> result = new ArrayList<String>(count);
+			for(long i = recorded - count; i < recorded; i++) {
+				final int slot = (int) (i % events.length);
+				result.add(times[slot] + "ns " + events[slot] + " " + as[slot] + " " + bs[slot]);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package minkodkod;
+
+// ALUMINUM: New class. Flight Recorder events for the hot paths of minimal-model finding.
+
+/**
+ * The JDK Flight Recorder events emitted by MinSolver and its iterators. They cost next
+ * to nothing unless a recording enables them, and show up in a recording next to the
+ * GC and allocation events, under "Aluminum". The events made for every SAT call or
+ * claim are only recorded if they take at least 1 ms, unless the recording's settings
+ * say otherwise.
+ * <p>
+ * The event classes are in FlightEventsJfr, the only class that uses jdk.jfr (JDK 11,
+ * or 8u262 and later). It is loaded by reflection if this JVM has Flight Recorder; on
+ * one without, the methods here return null and no event is made. Callers begin an
+ * event, and commit it with its values if shouldCommit() says a recording wants it.
+ */
+final class FlightEvents {
+	/* makes the events, or null if this JVM has no Flight Recorder */
+	private static final Factory factory = load();
+
+	private FlightEvents() {}
+
+	private static Factory load() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return (Factory) Class.forName("minkodkod.FlightEventsJfr").getDeclaredConstructor().newInstance();
+		} catch(ReflectiveOperationException e) {
+			return null;
+		} catch(LinkageError e) {
+			return null;
+		}
+	}
+
+	static Translate translate() {
+		return (factory == null) ? null : factory.translate();
+	}
+
+	static ClaimSolver claimSolver() {
+		return (factory == null) ? null : factory.claimSolver();
+	}
+
+	static Solve solve() {
+		return (factory == null) ? null : factory.solve();
+	}
+
+	static MinimizationRound minimizationRound() {
+		return (factory == null) ? null : factory.minimizationRound();
+	}
+
+	static ConsistentFacts consistentFacts() {
+		return (factory == null) ? null : factory.consistentFacts();
+	}
+
+	static Augment augment() {
+		return (factory == null) ? null : factory.augment();
+	}
+
+	/** Makes the events; implemented by FlightEventsJfr. */
+	interface Factory {
+		Translate translate();
+		ClaimSolver claimSolver();
+		Solve solve();
+		MinimizationRound minimizationRound();
+		ConsistentFacts consistentFacts();
+		Augment augment();
+	}
+
+	/** What every event does; jdk.jfr.Event implements it. */
+	interface Event {
+		void begin();
+		boolean shouldCommit();
+	}
+
+	/** Translation of a spec to CNF. */
+	interface Translate extends Event {
+		void commit(int primaryVariables, int variables, int clauses, boolean trivial);
+	}
+
+	/** An iterator switching the SAT solver to its cone restrictions and SBP setting. */
+	interface ClaimSolver extends Event {
+		void commit(int iteration, int primaryVariables, int clauses, int coneClauses);
+	}
+
+	/** Finding a candidate model and minimizing it. */
+	interface Solve extends Event {
+		void commit(int iteration, int primaryVariables, int clauses, boolean satisfiable, boolean minimal);
+	}
+
+	/** One SAT call looking for a smaller model. */
+	interface MinimizationRound extends Event {
+		void commit(int iteration, int round, int primaryVariables, int clauses, int factsToDrop,
+				int assumptions, boolean satisfiable);
+	}
+
+	/** Computing the consistent facts of a model. */
+	interface ConsistentFacts extends Event {
+		void commit(int iteration, int primaryVariables, int clauses, int consistentFacts, boolean complete);
+	}
+
+	/** Making an iterator over the models of an augmented model. */
+	interface Augment extends Event {
+		void commit(int primaryVariables, int clauses, int augmentations);
+	}
+}
@@ -0,0 +1,194 @@
+package minkodkod;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+// ALUMINUM: New class. The Flight Recorder event classes behind FlightEvents.
+
+/**
+ * The jdk.jfr events of FlightEvents. This is the only class that needs jdk.jfr; it is
+ * loaded by reflection, and only on a JVM that has it, so the rest of the code runs
+ * without. Building it needs a JDK with jdk.jfr.
+ */
+final class FlightEventsJfr implements FlightEvents.Factory {
+	public FlightEvents.Translate translate() {
+		return new Translate();
+	}
+
+	public FlightEvents.ClaimSolver claimSolver() {
+		return new ClaimSolver();
+	}
+
+	public FlightEvents.Solve solve() {
+		return new Solve();
+	}
+
+	public FlightEvents.MinimizationRound minimizationRound() {
+		return new MinimizationRound();
+	}
+
+	public FlightEvents.ConsistentFacts consistentFacts() {
+		return new ConsistentFacts();
+	}
+
+	public FlightEvents.Augment augment() {
+		return new Augment();
+	}
+
+	@Name("minkodkod.Translate")
+	@Label("Translate")
+	@Category("Aluminum")
+	@Description("Translation of a spec to CNF")
+	static final class Translate extends Event implements FlightEvents.Translate {
+		@Label("Primary Variables")
+		int primaryVariables;
+		@Label("Variables")
+		int variables;
+		@Label("Clauses")
+		int clauses;
+		@Label("Trivial")
+		boolean trivial;
+
+		public void commit(int primaryVariables, int variables, int clauses, boolean trivial) {
+			this.primaryVariables = primaryVariables;
+			this.variables = variables;
+			this.clauses = clauses;
+			this.trivial = trivial;
+			commit();
+		}
+	}
+
+	@Name("minkodkod.ClaimSolver")
+	@Threshold("1 ms")
+	@Label("Claim Solver")
+	@Category("Aluminum")
+	@Description("An iterator switching the SAT solver to its cone restrictions and SBP setting")
+	static final class ClaimSolver extends Event implements FlightEvents.ClaimSolver {
+		@Label("Iteration")
+		int iteration;
+		@Label("Primary Variables")
+		int primaryVariables;
+		@Label("Clauses")
+		int clauses;
+		@Label("Cone Clauses")
+		int coneClauses;
+
+		public void commit(int iteration, int primaryVariables, int clauses, int coneClauses) {
+			this.iteration = iteration;
+			this.primaryVariables = primaryVariables;
+			this.clauses = clauses;
+			this.coneClauses = coneClauses;
+			commit();
+		}
+	}
+
+	@Name("minkodkod.Solve")
+	@Label("Solve")
+	@Category("Aluminum")
+	@Description("Finding a candidate model and minimizing it")
+	static final class Solve extends Event implements FlightEvents.Solve {
+		@Label("Iteration")
+		int iteration;
+		@Label("Primary Variables")
+		int primaryVariables;
+		@Label("Clauses")
+		int clauses;
+		@Label("Satisfiable")
+		boolean satisfiable;
+		@Label("Proven Minimal")
+		boolean minimal;
+
+		public void commit(int iteration, int primaryVariables, int clauses, boolean satisfiable, boolean minimal) {
+			this.iteration = iteration;
+			this.primaryVariables = primaryVariables;
+			this.clauses = clauses;
+			this.satisfiable = satisfiable;
+			this.minimal = minimal;
+			commit();
+		}
+	}
+
+	@Name("minkodkod.MinimizationRound")
+	@Threshold("1 ms")
+	@Label("Minimization Round")
+	@Category("Aluminum")
+	@Description("One SAT call looking for a smaller model")
+	static final class MinimizationRound extends Event implements FlightEvents.MinimizationRound {
+		@Label("Iteration")
+		int iteration;
+		@Label("Round")
+		int round;
+		@Label("Primary Variables")
+		int primaryVariables;
+		@Label("Clauses")
+		int clauses;
+		@Label("Facts To Drop")
+		int factsToDrop;
+		@Label("Assumptions")
+		int assumptions;
+		@Label("Satisfiable")
+		boolean satisfiable;
+
+		public void commit(int iteration, int round, int primaryVariables, int clauses, int factsToDrop,
+				int assumptions, boolean satisfiable) {
+			this.iteration = iteration;
+			this.round = round;
+			this.primaryVariables = primaryVariables;
+			this.clauses = clauses;
+			this.factsToDrop = factsToDrop;
+			this.assumptions = assumptions;
+			this.satisfiable = satisfiable;
+			commit();
+		}
+	}
+
+	@Name("minkodkod.ConsistentFacts")
+	@Label("Consistent Facts")
+	@Category("Aluminum")
+	@Description("Computing the consistent facts of a model")
+	static final class ConsistentFacts extends Event implements FlightEvents.ConsistentFacts {
+		@Label("Iteration")
+		int iteration;
+		@Label("Primary Variables")
+		int primaryVariables;
+		@Label("Clauses")
+		int clauses;
+		@Label("Consistent Facts")
+		int consistentFacts;
+		@Label("Complete")
+		boolean complete;
+
+		public void commit(int iteration, int primaryVariables, int clauses, int consistentFacts, boolean complete) {
+			this.iteration = iteration;
+			this.primaryVariables = primaryVariables;
+			this.clauses = clauses;
+			this.consistentFacts = consistentFacts;
+			this.complete = complete;
+			commit();
+		}
+	}
+
+	@Name("minkodkod.Augment")
+	@Label("Augment")
+	@Category("Aluminum")
+	@Description("Making an iterator over the models of an augmented model")
+	static final class Augment extends Event implements FlightEvents.Augment {
+		@Label("Primary Variables")
+		int primaryVariables;
+		@Label("Clauses")
+		int clauses;
+		@Label("Augmentations")
+		int augmentations;
+
+		public void commit(int primaryVariables, int clauses, int augmentations) {
+			this.primaryVariables = primaryVariables;
+			this.clauses = clauses;
+			this.augmentations = augmentations;
+			commit();
+		}
+	}
+}
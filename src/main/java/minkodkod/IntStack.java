@@ -0,0 +1,108 @@
+package minkodkod;
+
+import java.util.Arrays;
+
+// ALUMINUM: New class. A reusable buffer of literals for the minimization loop and the
+// SAT calls it makes. (Kodkod's ArrayIntVector clears by removing from the front, which
+// is quadratic, so it does not suit buffers that are emptied on every round.)
+
+/**
+ * A growable stack of ints. Clearing or truncating it keeps its capacity, so a stack
+ * that is reused across rounds stops allocating once it has grown to its working size.
+ */
+final class IntStack {
+	private int[] elements;
+	private int size;
+
+	IntStack() {
+		this(16);
+	}
+
+	IntStack(int capacity) {
+		this.elements = new int[Math.max(1, capacity)];
+		this.size = 0;
+	}
+
+	void push(int value) {
+		if(size == elements.length)
+			elements = Arrays.copyOf(elements, size * 2);
+		elements[size++] = value;
+	}
+
+	void pushAll(int[] values) {
+		if(values == null)
+			return;
+		for(int value : values)
+			push(value);
+	}
+
+	int pop() {
+		return elements[--size];
+	}
+
+	int get(int index) {
+		assert index < size;
+		return elements[index];
+	}
+
+	void set(int index, int value) {
+		assert index < size;
+		elements[index] = value;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes the first occurrence of the given value, shifting the elements above it down.
+	 * @return true if the value was found.
+	 */
+	boolean remove(int value) {
+		for(int i = 0; i < size; i++) {
+			if(elements[i] == value) {
+				System.arraycopy(elements, i + 1, elements, i, size - i - 1);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drops every element above the given size.
+	 */
+	void truncate(int newSize) {
+		assert newSize <= size;
+		size = newSize;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Returns the backing array, whose first size() elements are this stack's contents.
+	 * The array is only valid until the next push.
+	 */
+	int[] elements() {
+		return elements;
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	public String toString() {
+		StringBuilder result = new StringBuilder("[");
+		for(int i = 0; i < size; i++) {
+			if(i > 0) result.append(", ");
+			result.append(elements[i]);
+		}
+		return result.append("]").toString();
+	}
+}
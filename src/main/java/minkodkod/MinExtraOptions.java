@@ -7,6 +7,36 @@ public class MinExtraOptions {
 	//Log the number of elements, attributes and relations that are being reduced by minimization:
 	private boolean logMinimizationHistory = false;
 	
+	//Minimize using failed-assumption cores from SAT4J rather than one cone-shrinking clause per round:
+	private boolean coreGuidedMinimization = false;
+	
+	//Give every augmented iterator a SAT solver of its own instead of sharing the translation's:
+	private boolean solverPerIterator = false;
+	
+	//Number of solvers getConsistentFacts() runs on at once (1 = serially, on the iterator's solver):
+	private int consistentFactsWorkers = 1;
+	
+	//Threads precomputing the augmentations of the latest model in the background (0 = none):
+	private int speculativeAugmentationWorkers = 0;
+	
+	//Number of consistent facts per model whose augmentations are precomputed:
+	private int speculativeAugmentationLimit = 16;
+	
+	//Number of augmentations whose models MinSolver.augment() remembers and replays (0 = none):
+	private int augmentationCacheSize = 0;
+	
+	//Wall-clock milliseconds each next() or getConsistentFacts() call may take (0 = no limit):
+	private long deadlineMillis = 0;
+	
+	//Conflicts each SAT call may meet before giving up (0 = no limit):
+	private int conflictBudget = 0;
+	
+	//SAT calls minimize() may make after finding the candidate (0 = no limit):
+	private int minimizationSatCallBudget = 0;
+	
+	//Only return models that satisfy the SBP (canonical models):
+	private boolean forceRespectSB = false;
+	
 	public void setLogMinimizationHistory(boolean logMinimizationHistory){
 		this.logMinimizationHistory = logMinimizationHistory;
 	}
@@ -14,4 +44,171 @@ public class MinExtraOptions {
 	public boolean logMinimizationHistory(){
 		return this.logMinimizationHistory;
 	}
+	
+	/**
+	 * If set, minimize() passes blocks of the candidate's positive facts as negative 
+	 * assumptions and reads SAT4J's unsat explanation back, so that a single SAT call 
+	 * can remove a whole block or prove a fact necessary.
+	 */
+	public void setCoreGuidedMinimization(boolean coreGuidedMinimization){
+		this.coreGuidedMinimization = coreGuidedMinimization;
+	}
+
+	public boolean coreGuidedMinimization(){
+		return this.coreGuidedMinimization;
+	}
+	
+	/**
+	 * If set, MinSolver.augment() gives the new iterator its own SAT solver, a replica of 
+	 * the translation's solver built by replaying its clauses (no re-translation). Costs 
+	 * memory and a replay per augmentation, but iterators never hand a shared solver back 
+	 * and forth.
+	 */
+	public void setSolverPerIterator(boolean solverPerIterator){
+		this.solverPerIterator = solverPerIterator;
+	}
+
+	public boolean solverPerIterator(){
+		return this.solverPerIterator;
+	}
+
+	/**
+	 * Sets the number of solvers getConsistentFacts() splits its work across. With more 
+	 * than one, each worker gets a replica of the translation's solver (made once per 
+	 * translation and kept) and a thread from a pool the MinSolver keeps. The facts found 
+	 * are the same as with one worker, which runs on the iterator's own solver.
+	 */
+	public void setConsistentFactsWorkers(int consistentFactsWorkers){
+		if(consistentFactsWorkers < 1)
+			throw new IllegalArgumentException("consistentFactsWorkers must be positive: " + consistentFactsWorkers);
+		this.consistentFactsWorkers = consistentFactsWorkers;
+	}
+
+	public int consistentFactsWorkers(){
+		return this.consistentFactsWorkers;
+	}
+
+	/**
+	 * Sets the number of threads that precompute augmentations in the background; 0 (the 
+	 * default) turns speculation off. With speculation on, whenever an iterator produces a
+	 * model, the MinSolver computes its consistent facts and the first minimal model of 
+	 * the augmentation by each of them (up to speculativeAugmentationLimit), each on a 
+	 * replica of the translation's solver. augment() then hands out the precomputed 
+	 * iterator, whose first model is ready. Moving on (another model from any iterator of 
+	 * the MinSolver) cancels the speculation that is still running.
+	 */
+	public void setSpeculativeAugmentationWorkers(int speculativeAugmentationWorkers){
+		if(speculativeAugmentationWorkers < 0)
+			throw new IllegalArgumentException("speculativeAugmentationWorkers must be non-negative: " + speculativeAugmentationWorkers);
+		this.speculativeAugmentationWorkers = speculativeAugmentationWorkers;
+	}
+
+	public int speculativeAugmentationWorkers(){
+		return this.speculativeAugmentationWorkers;
+	}
+
+	/**
+	 * Sets the number of consistent facts per model whose augmentations are precomputed
+	 * (the first ones, in primary-variable order). Each costs a replica of the solver.
+	 */
+	public void setSpeculativeAugmentationLimit(int speculativeAugmentationLimit){
+		if(speculativeAugmentationLimit < 0)
+			throw new IllegalArgumentException("speculativeAugmentationLimit must be non-negative: " + speculativeAugmentationLimit);
+		this.speculativeAugmentationLimit = speculativeAugmentationLimit;
+	}
+
+	public int speculativeAugmentationLimit(){
+		return this.speculativeAugmentationLimit;
+	}
+
+	/**
+	 * Returns true if these options make MinSolver work on replicas of a translation's 
+	 * solver (see MinSATSolver.replicate()), which then has to record its clauses.
+	 * Translations made while none of these options was set are never replicated: 
+	 * setting one later falls back to working on the translation's own solver.
+	 */
+	boolean replicatesSolvers(){
+		return solverPerIterator || consistentFactsWorkers > 1 || speculativeAugmentationWorkers > 0;
+	}
+
+	/**
+	 * Sets the number of augmentations (by translation and augments) whose histories
+	 * MinSolver.augment() keeps, least recently used first out; 0 (the default) turns the
+	 * cache off. Augmenting the same model by the same facts again returns an iterator that
+	 * replays the models found so far, with their cone restrictions, before solving for 
+	 * more. The cache keeps the translations it has histories for reachable; call 
+	 * MinSolver.free() to let them go.
+	 */
+	public void setAugmentationCacheSize(int augmentationCacheSize){
+		if(augmentationCacheSize < 0)
+			throw new IllegalArgumentException("augmentationCacheSize must be non-negative: " + augmentationCacheSize);
+		this.augmentationCacheSize = augmentationCacheSize;
+	}
+
+	public int augmentationCacheSize(){
+		return this.augmentationCacheSize;
+	}
+
+	/**
+	 * Sets the wall-clock time, in milliseconds, that each call to an iterator's next() 
+	 * or to getConsistentFacts() may take; 0 (the default) means no limit. (Translating 
+	 * the spec, on the first call, is not bounded.) A call that runs out of time returns
+	 * what it has: the best model found so far, with the outcome SATISFIABLE_NOT_PROVEN_MINIMAL,
+	 * or, if there is none, a solution with the outcome UNKNOWN (the iterator stays
+	 * usable, so the call can be retried); or the consistent facts found so far.
+	 * @see MinSolver.MinSolutionIterator#setDeadline(long)
+	 */
+	public void setDeadlineMillis(long deadlineMillis){
+		if(deadlineMillis < 0)
+			throw new IllegalArgumentException("deadlineMillis must be non-negative: " + deadlineMillis);
+		this.deadlineMillis = deadlineMillis;
+	}
+
+	public long deadlineMillis(){
+		return this.deadlineMillis;
+	}
+
+	/**
+	 * Sets the number of conflicts each SAT call may meet; 0 (the default) means no limit.
+	 * A call that runs out of conflicts exhausts the budget of the next() or 
+	 * getConsistentFacts() call that made it, as a deadline would.
+	 */
+	public void setConflictBudget(int conflictBudget){
+		if(conflictBudget < 0)
+			throw new IllegalArgumentException("conflictBudget must be non-negative: " + conflictBudget);
+		this.conflictBudget = conflictBudget;
+	}
+
+	public int conflictBudget(){
+		return this.conflictBudget;
+	}
+
+	/**
+	 * Sets the number of SAT calls minimize() may make to shrink a candidate; 0 (the 
+	 * default) means no limit. A candidate that is not minimal by then is returned as it 
+	 * stands, with the outcome SATISFIABLE_NOT_PROVEN_MINIMAL.
+	 */
+	public void setMinimizationSatCallBudget(int minimizationSatCallBudget){
+		if(minimizationSatCallBudget < 0)
+			throw new IllegalArgumentException("minimizationSatCallBudget must be non-negative: " + minimizationSatCallBudget);
+		this.minimizationSatCallBudget = minimizationSatCallBudget;
+	}
+
+	public int minimizationSatCallBudget(){
+		return this.minimizationSatCallBudget;
+	}
+
+	/**
+	 * If set, iterators skip the minimal models that do not satisfy the SBP (they return 
+	 * a canonical isomorph instead), and do not rule out the permutations of a model that 
+	 * would. Read when an iterator is made, so changing it does not affect iterators that
+	 * exist already.
+	 */
+	public void setForceRespectSB(boolean forceRespectSB){
+		this.forceRespectSB = forceRespectSB;
+	}
+
+	public boolean forceRespectSB(){
+		return this.forceRespectSB;
+	}
 }
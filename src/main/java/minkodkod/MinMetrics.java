@@ -0,0 +1,289 @@
+package minkodkod;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// ALUMINUM: New class. Metrics for long-running services that embed MinSolver.
+
+/**
+ * Counters and distributions fed by every MinSolver, MinSolutionIterator and
+ * MinSATSolver in the JVM, exposed over JMX (see {@link MinMetricsMXBean}). Off by
+ * default: while off, each feed point costs one volatile read. Needs nothing beyond
+ * the JDK, so it can also be read directly, e.g. in tests, through current().
+ * <p>
+ * Distributions keep their values in power-of-two buckets, so their percentiles are
+ * exact to within a factor of two; counts, means and maxima are exact.
+ */
+public final class MinMetrics implements MinMetricsMXBean {
+	/** The name under which the metrics are registered with the platform MBean server. */
+	public static final String OBJECT_NAME = "minkodkod:type=MinMetrics";
+
+	private static volatile MinMetrics current = null;
+
+	private final ObjectName name;
+	private volatile long start = System.nanoTime();
+	private final AtomicLong models = new AtomicLong();
+	private final Recorder minimizationSatCalls = new Recorder();
+	private final Recorder coneClauses = new Recorder();
+	private final Recorder consistentFacts = new Recorder();
+	private final Recorder augment = new Recorder();
+	private final Recorder satCalls = new Recorder();
+	/* weak references to the iterators created, until they are collected */
+	private final Set<Reference<?>> iterators = Collections.newSetFromMap(new ConcurrentHashMap<Reference<?>, Boolean>());
+	private final ReferenceQueue<Object> collected = new ReferenceQueue<Object>();
+
+	private MinMetrics(ObjectName name) {
+		this.name = name;
+	}
+
+	/**
+	 * Starts collecting metrics and registers them with the platform MBean server,
+	 * unless they are already enabled.
+	 * @return the metrics being collected
+	 * @throws IllegalStateException - the metrics could not be registered
+	 */
+	public static synchronized MinMetrics enable() {
+		if(current != null)
+			return current;
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			final MinMetrics metrics = new MinMetrics(new ObjectName(OBJECT_NAME));
+			server.registerMBean(metrics, metrics.name);
+			current = metrics;
+			return metrics;
+		} catch(JMException e) {
+			throw new IllegalStateException("could not register " + OBJECT_NAME, e);
+		}
+	}
+
+	/**
+	 * Stops collecting metrics and unregisters them.
+	 */
+	public static synchronized void disable() {
+		final MinMetrics metrics = current;
+		if(metrics == null)
+			return;
+		current = null;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(metrics.name);
+		} catch(JMException e) {
+			// Unregistered by someone else: nothing left to do.
+		}
+	}
+
+	/**
+	 * Returns the metrics being collected, or null if they are off.
+	 */
+	public static MinMetrics current() {
+		return current;
+	}
+
+	public long getModels() {
+		return models.get();
+	}
+
+	public double getModelsPerSecond() {
+		final long nanos = System.nanoTime() - start;
+		return (nanos <= 0) ? 0 : models.get() * 1e9 / nanos;
+	}
+
+	public Distribution getMinimizationSatCallsPerModel() {
+		return minimizationSatCalls.snapshot();
+	}
+
+	public Distribution getConeClausesPerIterator() {
+		return coneClauses.snapshot();
+	}
+
+	public Distribution getConsistentFactsNanos() {
+		return consistentFacts.snapshot();
+	}
+
+	public Distribution getAugmentNanos() {
+		return augment.snapshot();
+	}
+
+	public Distribution getSatCallNanos() {
+		return satCalls.snapshot();
+	}
+
+	public long getLiveIterators() {
+		dropCollected();
+		return iterators.size();
+	}
+
+	public void reset() {
+		models.set(0);
+		minimizationSatCalls.clear();
+		coneClauses.clear();
+		consistentFacts.clear();
+		augment.clear();
+		satCalls.clear();
+		start = System.nanoTime();
+	}
+
+	/**
+	 * Records that the given iterator was created.
+	 */
+	void iteratorCreated(Object iterator) {
+		dropCollected();
+		iterators.add(new WeakReference<Object>(iterator, collected));
+	}
+
+	/**
+	 * Records a model found with the given number of minimization SAT calls, by an
+	 * iterator then holding the given number of cone restriction clauses.
+	 */
+	void modelFound(long minimizationSatCalls, int coneClauses) {
+		models.incrementAndGet();
+		this.minimizationSatCalls.add(minimizationSatCalls);
+		this.coneClauses.add(coneClauses);
+	}
+
+	/**
+	 * Records the time taken to compute a model's consistent facts.
+	 */
+	void consistentFactsComputed(long nanos) {
+		consistentFacts.add(nanos);
+	}
+
+	/**
+	 * Records the time taken by an augmentation.
+	 */
+	void augmented(long nanos) {
+		augment.add(nanos);
+	}
+
+	/**
+	 * Records the time taken by a SAT call.
+	 */
+	void satCall(long nanos) {
+		satCalls.add(nanos);
+	}
+
+	private void dropCollected() {
+		Reference<?> reference;
+		while((reference = collected.poll()) != null)
+			iterators.remove(reference);
+	}
+
+	/**
+	 * A snapshot of a distribution of non-negative values.
+	 */
+	public static final class Distribution {
+		private final long count, max;
+		private final double mean;
+		private final long p50, p90, p99;
+
+		Distribution(long count, double mean, long p50, long p90, long p99, long max) {
+			this.count = count;
+			this.mean = mean;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.max = max;
+		}
+
+		/** Returns the number of values recorded. */
+		public long getCount() {
+			return count;
+		}
+
+		/** Returns the mean of the values recorded, or 0 if none was. */
+		public double getMean() {
+			return mean;
+		}
+
+		/** Returns the median, to within a factor of two. */
+		public long getP50() {
+			return p50;
+		}
+
+		/** Returns the 90th percentile, to within a factor of two. */
+		public long getP90() {
+			return p90;
+		}
+
+		/** Returns the 99th percentile, to within a factor of two. */
+		public long getP99() {
+			return p99;
+		}
+
+		/** Returns the largest value recorded, or 0 if none was. */
+		public long getMax() {
+			return max;
+		}
+
+		public String toString() {
+			return "count=" + count + " mean=" + mean + " p50=" + p50 + " p90=" + p90 + " p99=" + p99 + " max=" + max;
+		}
+	}
+
+	/**
+	 * Records values in power-of-two buckets: bucket b holds the values v with
+	 * 2^(b-1) <= v < 2^b, and bucket 0 holds 0.
+	 */
+	private static final class Recorder {
+		private final AtomicLongArray buckets = new AtomicLongArray(65);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		void add(long value) {
+			if(value < 0)
+				value = 0;
+			buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+			count.incrementAndGet();
+			sum.addAndGet(value);
+			long seen;
+			while(value > (seen = max.get()) && !max.compareAndSet(seen, value));
+		}
+
+		void clear() {
+			for(int ii = 0; ii < buckets.length(); ii++)
+				buckets.set(ii, 0);
+			count.set(0);
+			sum.set(0);
+			max.set(0);
+		}
+
+		Distribution snapshot() {
+			final long[] counts = new long[buckets.length()];
+			long total = 0;
+			for(int ii = 0; ii < counts.length; ii++)
+				total += (counts[ii] = buckets.get(ii));
+			final long largest = max.get();
+			return new Distribution(total, (total == 0) ? 0 : (double) sum.get() / total,
+					percentile(counts, total, 0.5, largest), percentile(counts, total, 0.9, largest),
+					percentile(counts, total, 0.99, largest), largest);
+		}
+
+		/**
+		 * Returns the upper end of the bucket holding the given quantile (but no more
+		 * than the largest value recorded).
+		 */
+		private static long percentile(long[] counts, long total, double quantile, long largest) {
+			if(total == 0)
+				return 0;
+			final long rank = (long) Math.ceil(quantile * total);
+			long seen = 0;
+			for(int ii = 0; ii < counts.length; ii++) {
+				seen += counts[ii];
+				if(seen >= rank)
+					return (ii == 0) ? 0 : Math.min(largest, (ii == 64) ? Long.MAX_VALUE : (1L << ii) - 1);
+			}
+			return largest;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package minkodkod;
+
+// ALUMINUM: New interface. The JMX view of MinMetrics.
+
+/**
+ * The attributes MinMetrics exposes over JMX, as {@link MinMetrics#OBJECT_NAME}.
+ * Distributions are reported as composite values (count, mean, percentiles, max).
+ */
+public interface MinMetricsMXBean {
+	/**
+	 * Returns the number of minimal models found since the metrics were enabled or reset.
+	 */
+	long getModels();
+
+	/**
+	 * Returns the number of minimal models found per second since the metrics were
+	 * enabled or reset.
+	 */
+	double getModelsPerSecond();
+
+	/**
+	 * Returns the distribution of the number of SAT calls made to minimize each model
+	 * (the call that found the candidate is not counted).
+	 */
+	MinMetrics.Distribution getMinimizationSatCallsPerModel();
+
+	/**
+	 * Returns the distribution of the number of cone restriction clauses an iterator
+	 * holds, taken each time it finds a model.
+	 */
+	MinMetrics.Distribution getConeClausesPerIterator();
+
+	/**
+	 * Returns the distribution of the time, in nanoseconds, taken to compute the
+	 * consistent facts of a model.
+	 */
+	MinMetrics.Distribution getConsistentFactsNanos();
+
+	/**
+	 * Returns the distribution of the time, in nanoseconds, taken by MinSolver.augment().
+	 */
+	MinMetrics.Distribution getAugmentNanos();
+
+	/**
+	 * Returns the distribution of the time, in nanoseconds, taken by each SAT call.
+	 */
+	MinMetrics.Distribution getSatCallNanos();
+
+	/**
+	 * Returns the number of iterators created since the metrics were enabled that have
+	 * not yet been garbage collected.
+	 */
+	long getLiveIterators();
+
+	/**
+	 * Clears the counters and distributions (but not the live iterators).
+	 */
+	void reset();
+}
@@ -0,0 +1,58 @@
+package minkodkod;
+
+// ALUMINUM: New class. The result of MinSolver.countMinimal().
+
+/**
+ * The number of minimal models of a spec, up to a limit, with the statistics of the
+ * whole count. The models counted are the ones MinSolver.solveAll() would return, but
+ * none of them is interpreted or kept.
+ */
+public final class MinModelCount {
+	private final long count;
+	private final boolean complete;
+	private final boolean provenMinimal;
+	private final MinStatistics stats;
+
+	MinModelCount(long count, boolean complete, boolean provenMinimal, MinStatistics stats) {
+		this.count = count;
+		this.complete = complete;
+		this.provenMinimal = provenMinimal;
+		this.stats = stats;
+	}
+
+	/**
+	 * Returns the number of models counted.
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * Returns true if the spec ran out of models before the limit was reached, so that
+	 * count() is the number of all its minimal models. False if the count stopped at the
+	 * limit, or because the budget ran out (see MinExtraOptions.setDeadlineMillis()).
+	 */
+	public boolean complete() {
+		return complete;
+	}
+
+	/**
+	 * Returns false if the budget ran out while minimizing some of the models counted,
+	 * which may then not be minimal (see MinSolution.Outcome.SATISFIABLE_NOT_PROVEN_MINIMAL).
+	 */
+	public boolean provenMinimal() {
+		return provenMinimal;
+	}
+
+	/**
+	 * Returns the statistics of the count: the size of the translation, the time it
+	 * took, and the time spent solving for all the models counted.
+	 */
+	public MinStatistics stats() {
+		return stats;
+	}
+
+	public String toString() {
+		return count + (complete ? "" : "+") + " minimal models" + (provenMinimal ? "" : " (not all proven minimal)");
+	}
+}
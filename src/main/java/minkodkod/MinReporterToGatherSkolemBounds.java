@@ -14,47 +14,71 @@ import kodkod.util.ints.IntSet;
 /**
  * Implementor of Kodkod's Reporter interface; used to acquire the post-Skolemization
  * Bounds that Kodkod creates internally. Also used to count minimization statistics.
+ * 
+ * ALUMINUM: Every MinSolutionIterator reports to a reporter of its own, which passes 
+ * Kodkod's calls on to the reporter of the MinSolver's options, so that iterators 
+ * running at once do not overwrite each other's bounds and statistics.
  * @author Tim
  *
  */
 public class MinReporterToGatherSkolemBounds implements Reporter
 {
-	Bounds skolemBounds = null; 
+	volatile Bounds skolemBounds = null; 
+	private final Reporter forward;
 	private int primaryVars;
 	private int iterations = 0;
 	private int reducedElements = 0;
 	private int reducedAttributes = 0;	
 	private int reducedRelations = 0;	
 	
+	public MinReporterToGatherSkolemBounds() {
+		this(null);
+	}
+	
+	/**
+	 * Constructs a reporter that also passes every call of the Reporter interface on to
+	 * the given one (if not null).
+	 */
+	MinReporterToGatherSkolemBounds(Reporter forward) {
+		this.forward = forward;
+	}
+	
 	@Override
 	public void detectedSymmetries(Set<IntSet> parts) {
+		if(forward != null) forward.detectedSymmetries(parts);
 	}
 
 	@Override
 	public void detectingSymmetries(Bounds bounds) {
+		if(forward != null) forward.detectingSymmetries(bounds);
 	}
 
 	@Override
 	public void flattening(BooleanFormula circuit) {
+		if(forward != null) forward.flattening(circuit);
 	}
 
 	@Override
 	public void generatingSBP() {
+		if(forward != null) forward.generatingSBP();
 	}
 
 	@Override
 	public void optimizingBoundsAndFormula() {
+		if(forward != null) forward.optimizingBoundsAndFormula();
 	}
 
 	@Override
 	public void skolemizing(Decl decl, Relation skolem, List<Decl> context) {
 		//System.out.println("Reporter: skolemizing: "+ decl +"; "+skolem+";"+context);
+		if(forward != null) forward.skolemizing(decl, skolem, context);
 	}
 
 	@Override
 	public void solvingCNF(int primaryVars, int vars, int clauses) {
 		// Make Kodkod tell us how many primary Vars...
 		this.primaryVars = primaryVars; 
+		if(forward != null) forward.solvingCNF(primaryVars, vars, clauses);
 	}
 
 	@Override
@@ -63,10 +87,12 @@ public class MinReporterToGatherSkolemBounds implements Reporter
 		// Make kodkod tell us what it's skolemized so we're working with the proper signature/bounds.
 		//System.out.println("Reporter: translatingToBoolean: "+ bounds+"==========\n");
 		skolemBounds = bounds;		
+		if(forward != null) forward.translatingToBoolean(formula, bounds);
 	}
 
 	@Override
 	public void translatingToCNF(BooleanFormula circuit) {				
+		if(forward != null) forward.translatingToCNF(circuit);
 	}
 	
 	public void setIterations(int iterations){
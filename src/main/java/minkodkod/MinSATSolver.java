@@ -22,19 +22,23 @@ package minkodkod;
  * THE SOFTWARE.
  */
 
-import java.util.HashSet;
 import java.util.NoSuchElementException;
-import java.util.Set;
 import java.util.Arrays;
 
+import kodkod.engine.satlab.SATFactory;
 import kodkod.engine.satlab.SATSolver;
+import kodkod.util.ints.ArrayIntVector;
+import kodkod.util.ints.IntVector;
 
 import org.sat4j.core.VecInt;
+import org.sat4j.minisat.core.Solver;
 import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.IConstr;
 import org.sat4j.specs.ISolver;
 import org.sat4j.specs.IVecInt;
 import org.sat4j.specs.IteratorInt;
+import org.sat4j.specs.Lbool;
+import org.sat4j.specs.SearchListener;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,11 +58,44 @@ public final class MinSATSolver implements SATSolver {
 	private int vars, clauses;
 	private int[] lastModel = null;
 	
-	// If toRemoveSBP is empty,
+	// Reused by every SAT call (for the assumptions) and every temporary constraint, so 
+	// that the minimization loop does not allocate a new vector per call. SAT4J copies 
+	// both before the call returns.
+	private static final int[] NO_ASSUMPTIONS = new int[0];
+	private final VecInt assumptionBuffer = new VecInt();
+	private final VecInt constraintBuffer = new VecInt();
+	
+	// The SBP clauses are all guarded by one selector variable: each clause C is added
+	// as (C or -sbpSelector). Activating or deactivating the SBP just changes which 
+	// literal of the selector is passed as an assumption; no clauses are added or removed,
+	// so learned clauses that depend on the SBP stay valid.
 	boolean sbpActive = true;
-	private Set<int[]> sbpClauses = new HashSet<int[]>();
-	private Set<IConstr> toRemoveSBP = new HashSet<IConstr>();
-	private Set<Integer> sbpUnitClauses = new HashSet<Integer>();
+	private int sbpSelector = 0;
+	private ClauseSet sbpClauses = new ClauseSet();
+	
+	// Iterators sharing this solver guard their own (cone-restriction) clauses with a 
+	// selector variable of their own, their "scope". Only the active scope's selector is
+	// assumed true; the others are assumed false, which switches their clauses off
+	// without removing them. Changing the active scope is therefore O(1).
+	private final IntVector scopes = new ArrayIntVector();
+	private int activeScope = 0;
+	
+	// The clauses of the translation (the original CNF and the guarded SBP), each 
+	// followed by a 0 as in DIMACS, and the factory that made this solver; both null 
+	// unless the solver was made by a recording() factory. Replayed by replicate(). 
+	// Scoped and temporary constraints are not recorded: they belong to whoever added them.
+	private IntVector clauseLog = null;
+	private SATFactory factory = null;
+	
+	// The budget of the task using this solver, if any (see SolveBudget), whether 
+	// expire() was called, and the conflict limit SAT4J was last given (0 = none). 
+	// Both are checked by the Expiry listener at every backjump of a call in progress.
+	private volatile SolveBudget budget = null;
+	private volatile boolean expired = false;
+	
+	/* Counts of the work done, for MinStatistics (see SolveCounters). */
+	private long satCalls = 0, assumptionsPassed = 0, clausesAdded = 0, clausesRemoved = 0;
+	private int conflictLimit = 0;
 	
 	public int internalNumConstraints()
 	{
@@ -76,7 +113,7 @@ public final class MinSATSolver implements SATSolver {
 	 */
 	public int numSBPClauses()
 	{
-		return sbpClauses.size() + sbpUnitClauses.size();
+		return sbpClauses.size();
 	}
 	
 	/**
@@ -88,69 +125,242 @@ public final class MinSATSolver implements SATSolver {
 	{
 		return sbpActive;
 	}
+	
+	/**
+	 * Returns the variable guarding the SBP clauses, or 0 if there are no SBP clauses.
+	 * @return
+	 */
+	public int sbpSelector()
+	{
+		return sbpSelector;
+	}
 		
 	/**
-	 * Call to augment the solver's clause set with the SBP clauses.
+	 * Call to make the solver respect the SBP clauses.
 	 * No effect (returns false) if SBP is already included.
 	 * @return
 	 */
 	public boolean activateSBP() 
 	{		
 		if(sbpActive) return false;
-				
-		for(int[] lits : sbpClauses)
-		{
-			try {
-				// Unit clauses should have been moved to sbpUnitClauses already,
-				// so safe to do this without checking for UnitClause
-				IConstr toRemove = solver.addClause(wrapper.wrap(lits));
-				logger.debug(toRemove.toString());
-				if(toRemove != null) 
-				{					
-					toRemoveSBP.add(toRemove);
-				}
-			} catch (ContradictionException e) {				
-				sat = Boolean.FALSE;		
-				logger.info("CONTRADICTION EXCEPTION in activateSBP");
-			}
-		}
-		
-		logger.debug("asbp:"+solver.nConstraints());
 		sbpActive = true;	
 		return true;
 	}
 	
 	/**
-	 * Call to *remove* SBP clauses from the solver.
+	 * Call to make the solver ignore the SBP clauses.
 	 * No effect (returns false) if SBP is not included already.
 	 * @return
 	 */
 	public boolean deactivateSBP()
 	{
 		if(!sbpActive) return false;
-		
-		// The current implementation of sat4j does not handle REMOVING unit clauses; it forces
-		// the use of assumptions. So we need the separate assumptions list above.
-		for(IConstr toRemove : toRemoveSBP)
-		{					
-			// Expect no UnitClauses here
-			solver.removeConstr(toRemove);
-		}
-		
-		// s/b same size
-		//logger.debug("dsbp:"+(foo-solver.nConstraints())+"; "+toRemoveSBP.size());
-		
-		toRemoveSBP.clear();
 		sbpActive = false;
 		return true;
 	}
 	
+	/**
+	 * Returns a factory that makes the solvers of the given factory record the clauses
+	 * of the translation, so that they can be replicated. Without it, nothing is recorded.
+	 * @param factory a factory of MinSATSolvers
+	 * @return a factory making replicable solvers with the given factory
+	 */
+	static SATFactory recording(final SATFactory factory)
+	{
+		return new SATFactory() {
+			public SATSolver instance() {
+				final MinSATSolver solver = (MinSATSolver) factory.instance();
+				solver.clauseLog = new ArrayIntVector();
+				solver.factory = factory;
+				return solver;
+			}
+			public boolean incremental() {
+				return factory.incremental();
+			}
+			public String toString() {
+				return factory.toString();
+			}
+		};
+	}
+	
+	/**
+	 * Returns true if this solver records the clauses of the translation (see recording()).
+	 */
+	boolean replicable()
+	{
+		return clauseLog != null;
+	}
+	
+	private void logClause(int[] lits)
+	{
+		if(clauseLog == null)
+			return;
+		for(int lit : lits)
+			clauseLog.add(lit);
+		clauseLog.add(0);
+	}
+	
+	/**
+	 * Returns a new solver, made by the factory that made this one, holding the same 
+	 * variables, original clauses and (guarded) SBP clauses as this one, by replaying the
+	 * clauses recorded during translation. Scoped and temporary constraints are not 
+	 * copied, and no scope is active in the copy. The SBP starts out active. The copy
+	 * can be replicated in turn.
+	 * @return a replica of this solver as it was after translation.
+	 * @throws IllegalStateException - !replicable()
+	 */
+	public MinSATSolver replicate()
+	{
+		if(clauseLog == null)
+			throw new IllegalStateException("clauses not recorded: solver not made by a recording factory");
+		final MinSATSolver copy = (MinSATSolver) factory.instance();
+		copy.clauseLog = new ArrayIntVector();
+		copy.factory = factory;
+		copy.addVariables(vars);
+		copy.sbpSelector = sbpSelector;
+		copy.sbpClauses = sbpClauses.copy();
+		
+		int[] buffer = new int[16];
+		int size = 0;
+		for(int ii=0;ii<clauseLog.size();ii++)
+		{
+			int lit = clauseLog.get(ii);
+			if(lit != 0)
+			{
+				if(size == buffer.length)
+					buffer = Arrays.copyOf(buffer, size * 2);
+				buffer[size++] = lit;
+				continue;
+			}
+			
+			copy.clauses++;
+			try {
+				copy.solver.addClause(copy.wrapper.wrap(Arrays.copyOf(buffer, size)));
+			} catch (ContradictionException e) {
+				copy.sat = Boolean.FALSE;
+				logger.debug("CONTRADICTION EXCEPTION in replicate");
+			}
+			size = 0;
+		}
+		copy.clauseLog.addAll(clauseLog);
+		return copy;
+	}
+	
+	/**
+	 * Returns, for each variable v in 1..maxVariable, the number of times it occurs (with
+	 * either sign) in the clauses of the translation, at index v. Scoped and temporary
+	 * constraints are not counted.
+	 * @return the occurrence counts of the variables 1..maxVariable; index 0 is unused.
+	 * @throws IllegalStateException - !replicable()
+	 */
+	public int[] occurrences(int maxVariable)
+	{
+		if(clauseLog == null)
+			throw new IllegalStateException("clauses not recorded: solver not made by a recording factory");
+		int[] result = new int[maxVariable + 1];
+		for(int ii=0;ii<clauseLog.size();ii++)
+		{
+			int var = Math.abs(clauseLog.get(ii));
+			if(var != 0 && var <= maxVariable)
+				result[var]++;
+		}
+		return result;
+	}
+
+	/**
+	 * Allocates a fresh selector variable for a new scope of clauses.
+	 * The scope is inactive until passed to setActiveScope.
+	 * @return the selector variable of the new scope.
+	 */
+	public int newScope()
+	{
+		addVariables(1);
+		scopes.add(vars);
+		return vars;
+	}
+	
+	/**
+	 * Makes the clauses of the given scope (and no other scope) part of every 
+	 * subsequent solve. Pass 0 to deactivate all scopes.
+	 * @param scope a selector returned by newScope(), or 0.
+	 */
+	public void setActiveScope(int scope)
+	{
+		activeScope = scope;
+	}
+	
+	/**
+	 * Returns the active scope, or 0 if none.
+	 * @return
+	 */
+	public int activeScope()
+	{
+		return activeScope;
+	}
+	
+	/**
+	 * Retires the given scope once no one will activate it again: asserts its selector
+	 * false for good, which satisfies whatever of its clauses (and of the clauses learned
+	 * from them) are still in the solver, and stops passing the selector as an assumption.
+	 * The caller removes the scope's clauses with removeScopedClause, before or after.
+	 * @param scope a selector returned by newScope().
+	 */
+	public void releaseScope(int scope)
+	{
+		if(!scopes.remove(scope))
+			return;
+		if(activeScope == scope)
+			activeScope = 0;
+		try {
+			clauses++;
+			clausesAdded++;
+			solver.addClause(wrapper.wrap(new int[] { -scope }));
+		} catch (ContradictionException e) {
+			// The selector only occurs negatively, so this cannot happen.
+			logger.debug("CONTRADICTION EXCEPTION in releaseScope");
+		}
+		DiagnosticTrace.record("release-scope", scope, scopes.size());
+	}
+
+	/**
+	 * Adds a clause that is only enforced while the given scope is active.
+	 * The clause stays in the solver until removed with removeScopedClause.
+	 * @param scope a selector returned by newScope().
+	 * @param lits the literals of the clause. May be empty, in which case the scope 
+	 * becomes unsatisfiable.
+	 * @return the constraint
+	 * @throws ContradictionException
+	 */
+	public IConstr addScopedClause(int scope, int[] lits) throws ContradictionException
+	{
+		int[] guarded = Arrays.copyOf(lits, lits.length + 1);
+		guarded[lits.length] = -scope;
+		clauses++;
+		clausesAdded++;
+		DiagnosticTrace.record("scoped-clause", lits.length, scope);
+		return solver.addClause(wrapper.wrap(guarded));
+	}
+	
+	/**
+	 * Removes a clause added by addScopedClause, e.g., because another clause of the 
+	 * same scope subsumes it.
+	 * @param constraint the constraint returned by addScopedClause.
+	 * @return the value from solver.removeConstr(constraint)
+	 */
+	public boolean removeScopedClause(IConstr constraint)
+	{
+		clauses--;
+		clausesRemoved++;
+		return solver.removeConstr(constraint);
+	}
+	
 	/** Fills lastModel from solver.model(). We have to do this because sometimes,
-	 * the solver drops some indices.
+	 * the solver drops some indices. The array is reused from one model to the next.
 	 */
 	public void setLastModel() {
 		int[] model = solver.model();
-		lastModel = new int[vars];
+		if(lastModel == null || lastModel.length != vars)
+			lastModel = new int[vars];
 
 		//in the minimization algorithm, we want to treat unknown variables 
 		//(don't cares) as they are true.		
@@ -166,6 +376,10 @@ public final class MinSATSolver implements SATSolver {
 		}
 	}	
 	
+	/**
+	 * Returns the last model found. The array is overwritten by the next model found; 
+	 * callers that keep it must clone it.
+	 */
 	public int[] getLastModel() {
 		return lastModel;
 	}
@@ -179,6 +393,9 @@ public final class MinSATSolver implements SATSolver {
 		if (solver==null)
 			throw new NullPointerException("solver");
 		this.solver = solver;
+		// Conflict-based, so that Expiry can expire calls (see expire()).
+		solver.setTimeoutOnConflicts(Integer.MAX_VALUE);
+		solver.setSearchListener(new Expiry());
 		this.wrapper = new ReadOnlyIVecInt();
 		this.sat = null;
 		this.vars = this.clauses = 0;
@@ -222,8 +439,12 @@ public final class MinSATSolver implements SATSolver {
 		try {
 			//if (!Boolean.FALSE.equals(sat)) {
 				clauses++;
+				clausesAdded++;
+				logClause(lits);
 				solver.addClause(wrapper.wrap(lits));
-				logger.debug(Arrays.toString(lits));
+				DiagnosticTrace.record("clause", lits.length, clauses);
+				if(logger.isDebugEnabled())
+					logger.debug(Arrays.toString(lits));
 //				for(int lit : lits) {
 //					System.out.print(lit + " ");
 //				}
@@ -240,45 +461,31 @@ public final class MinSATSolver implements SATSolver {
 	
 	static boolean isTautology(int[] lits)
 	{			
-		Set<Integer> litsSet = new HashSet<Integer>(lits.length);
-		for(int ii : lits)
-			litsSet.add(ii);
-		for(Integer ii : litsSet)
-			if(litsSet.contains(-ii))
-				return true;
-		return false;
+		return ClauseSet.isTautology(lits);
 	}
 	
 	public boolean addSBPClause(int[] lits)
 	{
 		//System.out.println("SBP CLAUSE ADDED: "+Arrays.toString(lits));
-		// Can't just call addClause, that would obstruct the IConstr
 		try {			
-
-			// Still need to use assumptions...
-			if(lits.length <= 1)
+			// Don't try to add a clause we already have (up to ordering), or a tautology. 
+			if(!sbpClauses.add(lits))					
+				return true;
+			
+			// Allocate the selector once the SBP translation has allocated its own variables.
+			if(sbpSelector == 0)
 			{
-				sbpUnitClauses.add(lits[0]);
+				addVariables(1);
+				sbpSelector = vars;
 			}
-			else
-			{
-				// Don't try to add a clause we already have. 
-				// TODO: This is order-dependent (since passed as array). 
-				// Caller needs to make sure there are no identical (up to ordering) clauses...
-				if(sbpClauses.contains(lits))					
-					return true;
-				
-				IConstr toRemove = solver.addClause(wrapper.wrap(lits));
-			
-				// DO NOT store wrapper.wrap(lits); it's in a read only field that is re-used. 
-				sbpClauses.add(lits.clone());
 			
-				if(toRemove != null)
-				{
-					logger.debug("toRemove="+toRemove);
-					toRemoveSBP.add(toRemove);
-				}			
-			}
+			// Unit clauses are guarded like any other, so no separate list of assumptions is needed.
+			int[] guarded = Arrays.copyOf(lits, lits.length + 1);
+			guarded[lits.length] = -sbpSelector;
+			logClause(guarded);
+			clausesAdded++;
+			solver.addClause(wrapper.wrap(guarded));
+			DiagnosticTrace.record("sbp-clause", lits.length, sbpClauses.size());
 						
 			return true;			
 		} catch (ContradictionException e) {
@@ -296,10 +503,28 @@ public final class MinSATSolver implements SATSolver {
 	 */
 	public IConstr addConstraint(int[] lits) throws ContradictionException {
 		clauses++;
+		clausesAdded++;
 		IConstr temp = solver.addClause(wrapper.wrap(lits));
 		return temp;
 	}	
 	
+	/**
+	 * Adds the clause held in the given stack to the solver; see addConstraint(int[]).
+	 * @param lits the literals of the clause.
+	 * @return the constraint that was added.
+	 * @throws ContradictionException
+	 */
+	IConstr addConstraint(IntStack lits) throws ContradictionException {
+		clauses++;
+		clausesAdded++;
+		constraintBuffer.clear();
+		constraintBuffer.ensure(lits.size());
+		final int[] elements = lits.elements();
+		for(int ii=0;ii<lits.size();ii++)
+			constraintBuffer.unsafePush(elements[ii]);
+		return solver.addClause(constraintBuffer);
+	}
+	
 	/**
 	 * Removes a constraint from the underlying SATSolver.
 	 * @param constraint the constraint
@@ -307,38 +532,42 @@ public final class MinSATSolver implements SATSolver {
 	 */
 	public boolean removeConstraint(IConstr constraint){
 		clauses--;
+		clausesRemoved++;
 		return solver.removeConstr(constraint);
 	}
 	
 	/**
-	 * Returns the assumptions given plus SBP assumptions if SBP is active
+	 * Returns the assumptions given plus the selectors: the SBP selector is assumed true 
+	 * if SBP is active, false otherwise; the active scope's selector is assumed true and 
+	 * every other scope's false. (Assuming a selector false rather than leaving it free 
+	 * satisfies all of its clauses at once, so the solver never searches over them.)
+	 * 
+	 * The returned vector is reused by the next call.
 	 * @param assumptions
+	 * @param size the number of leading elements of assumptions to use
 	 * @return
 	 */
-	IVecInt getAssumptions(int[] assumptions)
+	IVecInt getAssumptions(int[] assumptions, int size)
 	{
 		//System.out.println("Getting assumptions. SBP="+sbpActive);
-		if(sbpActive)
-		{
-			int[] together = new int[assumptions.length+sbpUnitClauses.size()];
-			for(int ii=0;ii<assumptions.length;ii++)
-				together[ii] = assumptions[ii];
-			int ii = 0;
-			for(Integer unit : sbpUnitClauses)
-			{
-				together[ii+assumptions.length] = unit;
-				ii++;
-			}
-							
-			logger.debug("assumptions (+sbp):"+Arrays.toString(together));
-			
-			return new VecInt(together);
-		}
-		else
+		VecInt together = assumptionBuffer;
+		together.clear();
+		together.ensure(size + 1 + scopes.size());
+		for(int ii=0;ii<size;ii++)
+			together.unsafePush(assumptions[ii]);
+		
+		if(sbpSelector != 0)
+			together.unsafePush(sbpActive ? sbpSelector : -sbpSelector);
+		
+		for(int ii=0;ii<scopes.size();ii++)
 		{
-			logger.debug("assumptions (-sbp):"+Arrays.toString(assumptions));
-			return new VecInt(assumptions);
+			int scope = scopes.get(ii);
+			together.unsafePush(scope == activeScope ? scope : -scope);
 		}
+		
+		if(logger.isDebugEnabled())
+			logger.debug("assumptions ("+(sbpActive ? "+" : "-")+"sbp):"+together);
+		return together;
 	}
 	
 	/**
@@ -348,7 +577,7 @@ public final class MinSATSolver implements SATSolver {
 	public boolean solve(boolean saveModel) {
 		try {
 			//if (!Boolean.FALSE.equals(sat)){
-				sat = Boolean.valueOf(solver.isSatisfiable(getAssumptions(new int[] {})));
+				sat = Boolean.valueOf(isSatisfiable(getAssumptions(NO_ASSUMPTIONS, 0)));
 				if(sat && saveModel)
 					setLastModel();
 				
@@ -356,7 +585,7 @@ public final class MinSATSolver implements SATSolver {
 			//}
 			return sat;
 		} catch (org.sat4j.specs.TimeoutException e) {
-			throw new RuntimeException("timed out");
+			throw new BudgetExhaustedException("SAT call expired");
 		} 
 	}
 	
@@ -369,14 +598,26 @@ public final class MinSATSolver implements SATSolver {
 		return solve(assumptions, true);
 	}
 	
+	/**
+	 * Solves under the assumptions held in the given stack (see solve(int[])).
+	 */
+	boolean solve(IntStack assumptions)
+	{
+		return solve(assumptions.elements(), assumptions.size(), true);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * @param assumptions additional assumptions for the SATSolver
 	 * @see kodkod.engine.satlab.SATSolver#solve()
 	 */
 	public boolean solve(int[] assumptions, boolean saveModel) {
+		return solve(assumptions, assumptions.length, saveModel);
+	}
+	
+	private boolean solve(int[] assumptions, int size, boolean saveModel) {
 		try {			
-			sat = Boolean.valueOf(solver.isSatisfiable(getAssumptions(assumptions)));
+			sat = Boolean.valueOf(isSatisfiable(getAssumptions(assumptions, size)));
 				
 			/*org.sat4j.minisat.core.Solver aSolver = (org.sat4j.minisat.core.Solver) solver;
 			String s = "";
@@ -439,9 +680,146 @@ public final class MinSATSolver implements SATSolver {
 			return sat;
 			
 		} catch (org.sat4j.specs.TimeoutException e) {
-			throw new RuntimeException("timed out");
+			throw new BudgetExhaustedException("SAT call expired");
 		} 
 	}	
+	
+	/**
+	 * Makes the given SAT call within the budget, if any: fails at once if the budget is
+	 * exhausted, and otherwise gives SAT4J the conflict limit, and expires the call (see 
+	 * Expiry) if the budget runs out or expire() is called while it is in progress. A 
+	 * call that returns after either happened counts as expired too.
+	 * @throws BudgetExhaustedException - the budget is exhausted
+	 * @throws org.sat4j.specs.TimeoutException - the call expired
+	 */
+	private boolean isSatisfiable(IVecInt assumptions) throws org.sat4j.specs.TimeoutException {
+		satCalls++;
+		assumptionsPassed += assumptions.size();
+		final long start = (MinMetrics.current() == null) ? 0 : System.nanoTime();
+		final SolveBudget budget = this.budget;
+		if(budget != null && budget.exhausted())
+			throw new BudgetExhaustedException("budget exhausted");
+		if(expired)
+			throw new org.sat4j.specs.TimeoutException("expired");
+		limitConflicts((budget == null) ? 0 : budget.conflicts);
+		final boolean sat = solver.isSatisfiable(assumptions);
+		if(expired())
+			throw new org.sat4j.specs.TimeoutException("expired");
+		return finished(assumptions, sat, start);
+	}
+	
+	/**
+	 * Returns true if the SAT call in progress should give up.
+	 */
+	private boolean expired() {
+		final SolveBudget budget = this.budget;
+		return expired || (budget != null && budget.exhausted());
+	}
+	
+	/**
+	 * Records a SAT call, started at the given time (or 0 if the metrics were off), in 
+	 * the DiagnosticTrace and the metrics, and returns its result.
+	 */
+	private static boolean finished(IVecInt assumptions, boolean sat, long start) {
+		DiagnosticTrace.record("solve", assumptions.size(), sat ? 1 : 0);
+		if(start != 0) {
+			final MinMetrics metrics = MinMetrics.current();
+			if(metrics != null)
+				metrics.satCall(System.nanoTime() - start);
+		}
+		return sat;
+	}
+	
+	/**
+	 * Returns the number of SAT calls made so far.
+	 */
+	long satCalls() {
+		return satCalls;
+	}
+	
+	/**
+	 * Returns the number of assumptions, selectors included, passed to the SAT calls so far.
+	 */
+	long assumptionsPassed() {
+		return assumptionsPassed;
+	}
+	
+	/**
+	 * Returns the number of clauses added so far, of any kind (translation included).
+	 */
+	long clausesAdded() {
+		return clausesAdded;
+	}
+	
+	/**
+	 * Returns the number of scoped clauses and constraints removed so far.
+	 */
+	long clausesRemoved() {
+		return clausesRemoved;
+	}
+	
+	/**
+	 * Returns the number of conflicts SAT4J has met so far.
+	 */
+	long conflicts() {
+		if(solver instanceof Solver)
+			return ((Solver) solver).getStats().conflicts;
+		return sat4jStat("conflicts");
+	}
+	
+	/**
+	 * Returns the number of propagations SAT4J has made so far.
+	 */
+	long propagations() {
+		if(solver instanceof Solver)
+			return ((Solver) solver).getStats().propagations;
+		return sat4jStat("propagations");
+	}
+	
+	/**
+	 * Returns the given counter from SAT4J's getStat() map. The map is built anew on 
+	 * each call, so the default solvers' counters are read from their fields instead.
+	 */
+	private long sat4jStat(String name) {
+		final Object value = solver.getStat().get(name);
+		return (value instanceof Number) ? ((Number) value).longValue() : 0;
+	}
+	
+	/**
+	 * Makes SAT4J give up each call after the given number of conflicts (0 = never).
+	 */
+	private void limitConflicts(int conflicts) {
+		if(conflicts == conflictLimit)
+			return;
+		solver.setTimeoutOnConflicts((conflicts > 0) ? conflicts : Integer.MAX_VALUE);
+		conflictLimit = conflicts;
+	}
+	
+	/**
+	 * Makes this solver's SAT calls subject to the given budget (or to none, if null).
+	 * See SolveBudget.attach().
+	 */
+	void setBudget(SolveBudget budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * After a call to solve(assumptions) returned false, returns the subset of the
+	 * assumptions (including any SBP unit assumptions) that SAT4J found to be in conflict.
+	 * Returns an empty array if SAT4J gave no explanation, e.g., because the clauses
+	 * are unsatisfiable without any assumptions.
+	 * @return the failed assumptions of the last unsatisfiable call.
+	 */
+	public int[] failedAssumptions() {
+		IVecInt explanation = solver.unsatExplanation();
+		if(explanation == null)
+			return new int[0];
+
+		int[] result = new int[explanation.size()];
+		for(int ii=0;ii<result.length;ii++)
+			result[ii] = explanation.get(ii);
+		return result;
+	}
 
 	/**
 	 * {@inheritDoc}
@@ -467,6 +845,21 @@ public final class MinSATSolver implements SATSolver {
 		return (lastModel[variable - 1] > 0) ? true: false;
 	}	
 	
+	/**
+	 * Makes the SAT call in progress, if any, and every later one give up as if it had 
+	 * timed out, until resume() is called. Safe to call from another thread.
+	 */
+	public void expire() {
+		expired = true;
+	}
+	
+	/**
+	 * Undoes expire(), for the next SAT calls.
+	 */
+	void resume() {
+		expired = false;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.SATSolver#free()
@@ -474,7 +867,38 @@ public final class MinSATSolver implements SATSolver {
 	public synchronized final void free() {
 		//solver = null;
 	}
-	
+
+	/**
+	 * Expires the SAT call in progress, from the solving thread, at the first backjump
+	 * after expired() became true. SAT4J's expireTimeout() also drops the call's conflict
+	 * counter, which the search dereferences at its next conflict, so it is only safe
+	 * where the search checks for a timeout before its next conflict: right after a
+	 * backjump. (With a time-based timeout it would drop the timer, which the call then
+	 * cancels; hence the solver is kept on conflict-based timeouts.)
+	 */
+	private final class Expiry implements SearchListener {
+		private static final long serialVersionUID = 1L;
+
+		public void backjump(int level) {
+			if(expired())
+				solver.expireTimeout();
+		}
+
+		public void assuming(int p) {}
+		public void propagating(int p, IConstr reason) {}
+		public void backtracking(int p) {}
+		public void adding(int p) {}
+		public void learn(IConstr c) {}
+		public void delete(int[] clause) {}
+		public void conflictFound(IConstr confl, int dlevel, int trailLevel) {}
+		public void conflictFound(int p) {}
+		public void solutionFound() {}
+		public void beginLoop() {}
+		public void start() {}
+		public void end(Lbool result) {}
+		public void restarting() {}
+	}
+
 	/**
 	 * A wrapper for an int array that provides
 	 * read-only access to the array via the IVecInt interface. 
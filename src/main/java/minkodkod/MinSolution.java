@@ -25,6 +25,8 @@ import kodkod.ast.Relation;
 import kodkod.instance.Bounds;
 import kodkod.instance.Instance;
 import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntBitSet;
+import minkodkod.engine.fol2sat.MinTranslation;
 
 /**
  * From Kodkod Javadoc:
@@ -32,13 +34,17 @@ import kodkod.instance.TupleSet;
  * instance if the formula is satisfiable or a
  * proof of unsatisfiability if not.
  * 
- * ALUMINUM: Keep track of statistics on minimization.
+ * ALUMINUM: Keep track of statistics on minimization. A model found by solving keeps only
+ * its true primary variables and the translation, and builds its instance (and its
+ * propositional model) the first time it is asked for; tuples(Relation) interprets a 
+ * single relation without building the instance.
  */
 public final class MinSolution{
 	public static class MinimizationHistory{
 		public final int reducedElements;
 		public final int reducedAttributes;
 		public final int reducedRelations;		
+		/** SAT calls made to find the candidate and minimize it (in either minimization mode). */
 		public final int SATSolverInvocations;
 
 		public MinimizationHistory(){
@@ -73,19 +79,45 @@ public final class MinSolution{
 	
 	/** Stores the propositional model for this solution. 
 	 * This field is going to be used for augmenting operations.*/ 
-	private final int[] propositionalModel;
+	private int[] propositionalModel;
+	
+	/**
+	 * For a model found by solving: its true primary variables, the translation they
+	 * belong to, and the (pre-Skolem) bounds whose lower bounds pad the instance. The
+	 * instance and propositional model are built from them on demand. Null otherwise.
+	 */
+	private final IntBitSet truePrimaryVariables;
+	private final MinTranslation translation;
+	private final Bounds padding;
 
 	/**
-	 * Returns the propositional model for this solution.
+	 * Returns the propositional model for this solution. For a model found by solving,
+	 * it holds the primary variables only (v or -v at index v-1), and is built on the 
+	 * first call; later calls return the same array.
 	 */
-	public int[] getPropositionalModel() {		
+	public synchronized int[] getPropositionalModel() {		
+		if(propositionalModel == null && truePrimaryVariables != null) {
+			final int[] model = new int[translation.numPrimaryVariables()];
+			for(int i = 1; i <= model.length; i++)
+				model[i - 1] = truePrimaryVariables.contains(i) ? i : -i;
+			propositionalModel = model;
+		}
 		return propositionalModel;
 	}
 	
+	/**
+	 * Returns the primary variables that are true in this model, or null if this 
+	 * solution was not found by solving.
+	 */
+	IntBitSet truePrimaryVariables() {
+		return truePrimaryVariables;
+	}
+	
 	/**
 	 * Constructs a Solution from the given values.
 	 * @requires outcome != null && stats != null
-	 * @requires outcome = SATISFIABLE || TRIVIALLY_SATISFIABLE => instance != null
+	 * @requires outcome = SATISFIABLE || SATISFIABLE_NOT_PROVEN_MINIMAL || TRIVIALLY_SATISFIABLE => instance != null
+	 * (except for the models MinSolver.countMinimal() counts, which are never handed out)
 	 */
 	private MinSolution(Outcome outcome, MinStatistics stats, Instance instance, Proof proof, MinimizationHistory minimizationHistory,int[] propositionalModel, boolean isCanonical) {
 		assert outcome != null && stats != null;
@@ -96,6 +128,28 @@ public final class MinSolution{
 		this.propositionalModel = propositionalModel;
 		this.minimizationHistory = minimizationHistory;
 		this.isCanonical = isCanonical;
+		this.truePrimaryVariables = null;
+		this.translation = null;
+		this.padding = null;
+	}
+	
+	/**
+	 * Constructs a Solution for a model found by solving, from its true primary variables.
+	 * @requires outcome = SATISFIABLE || SATISFIABLE_NOT_PROVEN_MINIMAL
+	 */
+	private MinSolution(Outcome outcome, MinStatistics stats, MinTranslation translation, IntBitSet truePrimaryVariables, 
+			Bounds padding, MinimizationHistory minimizationHistory, boolean isCanonical) {
+		assert outcome != null && stats != null && translation != null && truePrimaryVariables != null;
+		this.outcome = outcome;
+		this.stats = stats;
+		this.instance = null;
+		this.proof = null;
+		this.propositionalModel = null;
+		this.minimizationHistory = minimizationHistory;
+		this.isCanonical = isCanonical;
+		this.truePrimaryVariables = truePrimaryVariables;
+		this.translation = translation;
+		this.padding = padding;
 	}
 	
 	/**
@@ -106,6 +160,43 @@ public final class MinSolution{
 		return new MinSolution(Outcome.SATISFIABLE, stats, instance, null, minimizationHistory, propositionalModel, isCanonical);
 	}
 	
+	/**
+	 * Returns a new Solution with a SATISFIABLE outcome, given stats and the model's true
+	 * primary variables in the given translation; its instance, padded with the lower 
+	 * bounds of padding, is built on demand.
+	 * @return {s: Solution | s.outcome() = SATISFIABLE && s.stats() = stats && s.instance() = [[truePrimaryVariables]] }
+	 */
+	static MinSolution satisfiable(MinStatistics stats, MinTranslation translation, IntBitSet truePrimaryVariables, Bounds padding, 
+			MinimizationHistory minimizationHistory, boolean isCanonical) {
+		return new MinSolution(Outcome.SATISFIABLE, stats, translation, truePrimaryVariables, padding, minimizationHistory, isCanonical);
+	}
+	
+	/**
+	 * Returns a new Solution with a SATISFIABLE_NOT_PROVEN_MINIMAL outcome, given stats and 
+	 * the model's true primary variables (see the matching satisfiable()).
+	 * @return {s: Solution | s.outcome() = SATISFIABLE_NOT_PROVEN_MINIMAL && s.stats() = stats && s.instance() = [[truePrimaryVariables]] }
+	 */
+	static MinSolution notProvenMinimal(MinStatistics stats, MinTranslation translation, IntBitSet truePrimaryVariables, Bounds padding, 
+			MinimizationHistory minimizationHistory, boolean isCanonical) {
+		return new MinSolution(Outcome.SATISFIABLE_NOT_PROVEN_MINIMAL, stats, translation, truePrimaryVariables, padding, minimizationHistory, isCanonical);
+	}
+	
+	/**
+	 * Returns a new Solution with a SATISFIABLE_NOT_PROVEN_MINIMAL outcome, given stats and instance.
+	 * @return {s: Solution | s.outcome() = SATISFIABLE_NOT_PROVEN_MINIMAL && s.stats() = stats && s.instance() = instance }
+	 */
+	static MinSolution notProvenMinimal(MinStatistics stats, Instance instance, MinimizationHistory minimizationHistory, int[] propositionalModel, boolean isCanonical) {
+		return new MinSolution(Outcome.SATISFIABLE_NOT_PROVEN_MINIMAL, stats, instance, null, minimizationHistory, propositionalModel, isCanonical);
+	}
+	
+	/**
+	 * Returns a new Solution with an UNKNOWN outcome, given stats.
+	 * @return {s: Solution | s.outcome() = UNKNOWN && s.stats() = stats && no s.instance() }
+	 */
+	static MinSolution unknown(MinStatistics stats) {
+		return new MinSolution(Outcome.UNKNOWN, stats, (Instance) null, null, null, null, true);
+	}
+	
 	/**
 	 * Returns a new Solution with a TRIVIALLY_SATISFIABLE outcome, given stats and instance.
 	 * @return {s: Solution | s.outcome() = TRIVIALLY_SATISFIABLE && s.stats() = stats && s.instance() = instance }
@@ -133,8 +224,8 @@ public final class MinSolution{
 	/**
 	 * Returns the outcome of the attempt to find
 	 * a model for this.formula.  If the outcome is 
-	 * SATISFIABLE or TRIVIALLY_SATISFIABLE, a satisfying 
-	 * instance can be obtained by calling {@link #instance()}.
+	 * SATISFIABLE, SATISFIABLE_NOT_PROVEN_MINIMAL or TRIVIALLY_SATISFIABLE, 
+	 * a satisfying instance can be obtained by calling {@link #instance()}.
 	 * If the formula is UNSATISFIABLE, a proof of unsatisfiability
 	 * can be obtained by calling {@link #proof()} provided that
 	 * translation logging was enabled and the unsatisfiability was
@@ -151,15 +242,47 @@ public final class MinSolution{
 		return outcome;
 	}
 	
+	/**
+	 * Returns true if this solution has an instance (the outcome is SATISFIABLE, 
+	 * SATISFIABLE_NOT_PROVEN_MINIMAL or TRIVIALLY_SATISFIABLE). Unlike instance() != null,
+	 * does not build the instance.
+	 * @return true if this solution has an instance.
+	 */
+	public boolean sat() {
+		return outcome == Outcome.SATISFIABLE || outcome == Outcome.SATISFIABLE_NOT_PROVEN_MINIMAL 
+				|| outcome == Outcome.TRIVIALLY_SATISFIABLE;
+	}
+	
 	/**
 	 * Returns a satisfiying instance for this.formula, if the
-	 * value returned by {@link #outcome() this.outcome()} is either
-	 * SATISFIABLE or TRIVIALLY_SATISFIABLE.  Otherwise returns null.
+	 * value returned by {@link #outcome() this.outcome()} is 
+	 * SATISFIABLE, SATISFIABLE_NOT_PROVEN_MINIMAL or TRIVIALLY_SATISFIABLE.  
+	 * Otherwise returns null. The instance of a model found by solving is built on the
+	 * first call; later calls return the same instance.
 	 * @return a satisfying instance for this.formula, if one exists.
 	 */
-	public Instance instance() {
+	public synchronized Instance instance() {
+		if(instance == null && truePrimaryVariables != null)
+			instance = MinSolver.padInstance(translation.interpret(truePrimaryVariables), padding);
 		return instance;
 	}
+	
+	/**
+	 * Returns the tuples of the given relation in this.instance(), or null if it has no
+	 * instance or the instance does not mention the relation. For a model found by 
+	 * solving, interprets only the given relation if the instance has not been built.
+	 * @return this.instance().tuples(relation)
+	 */
+	public TupleSet tuples(Relation relation) {
+		synchronized(this) {
+			if(instance != null || truePrimaryVariables == null)
+				return (instance == null) ? null : instance.tuples(relation);
+		}
+		final TupleSet tuples = translation.interpret(relation, truePrimaryVariables);
+		if(tuples != null)
+			return tuples;
+		return padding.relations().contains(relation) ? padding.lowerBound(relation) : null;
+	}
 
 	/**
 	 * Returns a proof of this.formula's unsatisfiability if the value 
@@ -193,9 +316,9 @@ public final class MinSolution{
 		b.append("---OUTCOME---\n");
 		b.append(outcome);
 		b.append("\n");
-		if (instance!=null) {
+		if (sat()) {
 			b.append("\n---INSTANCE---\n");
-			b.append(instance);
+			b.append(instance());
 			b.append("\n");
 		}
 		if (proof!=null) {
@@ -227,7 +350,18 @@ public final class MinSolution{
 		 * The formula is trivially unsatisfiable with respect to the specified bounds:
 		 * a series of simple transformations reduces the formula to the constant FALSE.  
 		 */
-		TRIVIALLY_UNSATISFIABLE
+		TRIVIALLY_UNSATISFIABLE,
+		/**
+		 * ALUMINUM: The formula is satisfiable with respect to the specified bounds, but the
+		 * budget ran out before the model found could be proven minimal. It is the smallest 
+		 * model found on the way down.
+		 */
+		SATISFIABLE_NOT_PROVEN_MINIMAL,
+		/**
+		 * ALUMINUM: The budget ran out (or the call was cancelled) before a model was found 
+		 * or the iterator was shown to be out of models.
+		 */
+		UNKNOWN
 	}
 
 }
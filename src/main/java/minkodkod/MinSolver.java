@@ -22,19 +22,22 @@ package minkodkod;
  * THE SOFTWARE.
  */
 
-import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.IConstr;
@@ -42,6 +45,7 @@ import org.sat4j.specs.TimeoutException;
 import kodkod.ast.Formula;
 import kodkod.ast.Relation;
 import kodkod.engine.config.Options;
+import kodkod.engine.config.Reporter;
 import minkodkod.MinSolution.MinimizationHistory;
 import minkodkod.engine.fol2sat.*;
 import kodkod.engine.satlab.SATAbortedException;
@@ -51,8 +55,8 @@ import kodkod.instance.Instance;
 import kodkod.instance.Tuple;
 import kodkod.instance.TupleFactory;
 import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntBitSet;
 import kodkod.util.ints.IntIterator;
-import kodkod.util.ints.IntSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +74,12 @@ import org.slf4j.LoggerFactory;
  * 
  * Note that all solving is done via solveAll(). There is no solve() method implemented, 
  * although one could be; all minimization is currently done in each MinSolutionIterator.
+ * 
+ * A MinSolver may be used from several threads at once. Each iterator owns what its 
+ * enumeration needs: a copy of the options with a reporter of its own (which gathers its 
+ * skolem bounds and minimization statistics), and the translation's SAT solver, which 
+ * its augmentations share and take turns on. A single iterator is meant to be used by 
+ * one thread at a time, except for MinSolutionIterator.cancel().
  */
 public final class MinSolver {
 
@@ -78,11 +88,24 @@ public final class MinSolver {
 	private final Options options;
 	private final MinExtraOptions extraOptions;	
 	
-	//The iterator that acquires the SAT solver.
-	private MinSolutionIterator activeIterator;
+	/**
+	 * Option: force SBP to be respected. Read when an iterator is made.
+	 * @deprecated use MinExtraOptions.setForceRespectSB(), which every iterator reads on its own
+	 */
+	@Deprecated
+	public volatile boolean forceRespectSB;
+	
+	// The skolem bounds of the spec translated last, for getSkolemBounds()
+	private volatile Bounds lastSkolemBounds = null;
 	
-	// Option: force SBP to be respected
-	public boolean forceRespectSB;
+	// Threads for the extra workers of getConsistentFacts(), if extraOptions asks for them; made on first use
+	private ExecutorService consistentFactsPool = null;
+	
+	// Precomputes augmentations of the latest model, if extraOptions asks for it; made on first use
+	private AugmentationSpeculator speculator = null;
+	
+	// The histories of recent augmentations, unless extraOptions turns caching off; made on first use
+	private AugmentationCache augmentationCache = null;
 
 	/**
 	 * Constructs a new Solver with the default options and extraOptions.
@@ -137,6 +160,115 @@ public final class MinSolver {
 	public MinExtraOptions extraOptions() {
 		return extraOptions;
 	}
+	
+	/**
+	 * Returns the pool that runs the workers of parallel consistent-fact computations, 
+	 * one thread per worker beyond the first (which runs on the caller's thread). The 
+	 * threads are daemons, so an idle pool does not keep the JVM alive.
+	 */
+	private synchronized ExecutorService consistentFactsPool() {
+		if(consistentFactsPool == null) {
+			consistentFactsPool = Executors.newFixedThreadPool(extraOptions.consistentFactsWorkers() - 1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "aluminum-consistent-facts");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return consistentFactsPool;
+	}
+	
+	/**
+	 * Returns the augmentation cache, or null if it is off.
+	 */
+	private synchronized AugmentationCache augmentationCache() {
+		if(augmentationCache == null && extraOptions.augmentationCacheSize() > 0)
+			augmentationCache = new AugmentationCache(extraOptions.augmentationCacheSize());
+		return augmentationCache;
+	}
+	
+	/**
+	 * Releases what this solver keeps between calls for the specs it has translated: 
+	 * clears the augmentation cache, whose histories keep their translations and SAT 
+	 * solvers reachable, and cancels the speculation in progress, if any. The solver can
+	 * still be used afterwards; iterators made earlier are not affected.
+	 */
+	public void free() {
+		final AugmentationCache cache;
+		final AugmentationSpeculator speculator;
+		synchronized(this) {
+			cache = this.augmentationCache;
+			speculator = this.speculator;
+		}
+		if(cache != null)
+			cache.clear();
+		if(speculator != null)
+			speculator.cancel();
+	}
+	
+	/**
+	 * Returns the number of calls to augment() that found the augmentation in the cache,
+	 * and so replay its models.
+	 */
+	public long augmentationCacheHits() {
+		final AugmentationCache cache = augmentationCache();
+		return (cache == null) ? 0 : cache.hits();
+	}
+	
+	/**
+	 * Returns the number of calls to augment() that did not find the augmentation in the cache.
+	 */
+	public long augmentationCacheMisses() {
+		final AugmentationCache cache = augmentationCache();
+		return (cache == null) ? 0 : cache.misses();
+	}
+	
+	/**
+	 * Returns the speculator, or null if speculative augmentation is off.
+	 */
+	private synchronized AugmentationSpeculator speculator() {
+		if(speculator == null && extraOptions.speculativeAugmentationWorkers() > 0)
+			speculator = new AugmentationSpeculator(this, extraOptions.speculativeAugmentationWorkers(), 
+					extraOptions.speculativeAugmentationLimit());
+		return speculator;
+	}
+	
+	/**
+	 * Called each time an iterator's next() returns: starts speculating on the new model,
+	 * if it is one, and cancels the speculation on the previous model either way.
+	 */
+	void movedOn(MinSolutionIterator iterator, MinSolution solution) {
+		final AugmentationSpeculator speculator = speculator();
+		if(speculator == null)
+			return;
+		
+		// A translation made before speculation was turned on cannot be replicated.
+		if(iterator.trivial || !solution.sat() || !iterator.translation.cnf().replicable())
+			speculator.cancel();
+		else
+			speculator.speculate(iterator, iterator.formula, iterator.getSkolemBounds());
+	}
+	
+	/**
+	 * Returns the consistent facts the speculator has for the given model of the given
+	 * iterator, or null.
+	 */
+	int[] speculatedConsistentFacts(MinSolutionIterator iterator, int[] model) {
+		final AugmentationSpeculator speculator = speculator();
+		return (speculator == null) ? null : speculator.consistentFacts(iterator, model);
+	}
+	
+	/**
+	 * Makes an augmentation of base's last model, for the speculator: like augment(), but
+	 * the new iterator always gets a solver of its own, so it can run on another thread.
+	 */
+	MinSolutionIterator speculativeAugmentation(Formula formula, Bounds skBounds, MinSolutionIterator base, ArrayList<Integer> allAugments) {
+		MinSolutionIterator iterator = new MinSolutionIterator(this, formula, skBounds, options, extraOptions, allAugments, base);
+		if(iterator.ownSolver == null)
+			iterator.ownSolver = iterator.translation.cnf().replicate();
+		return iterator;
+	}
 		
 	
 	/**
@@ -172,6 +304,102 @@ public final class MinSolver {
 		return iterator;
 	}
 	
+	/**
+	 * Like solveAll(), but the minimal models are found by the given number of workers at
+	 * once, each on a solver of its own, which split the space of models into cubes and
+	 * share their cone restrictions (see {@link ParallelEnumeration}). The same minimal
+	 * models are returned (up to isomorphism, with symmetry breaking on), each once, in 
+	 * no fixed order. The spec is translated before
+	 * this method returns. Augmentation and consistent facts need a MinSolutionIterator,
+	 * so they are not available for these models.
+	 * @return an iterator over all the minimal models of the formula with respect to the
+	 * given bounds, ending with an unsatisfiable solution.
+	 * @throws IllegalArgumentException - workers < 1
+	 * @see #solveAll(Formula, Bounds)
+	 */
+	public ParallelEnumeration solveAllParallel(final Formula formula, final Bounds origBounds, int workers)
+		throws HigherOrderDeclException, UnboundLeafException, AbortedException {
+		if (!options.solver().incremental())
+			throw new IllegalArgumentException("cannot enumerate solutions without an incremental solver.");
+		if (workers < 1)
+			throw new IllegalArgumentException("workers must be positive: " + workers);
+
+		final MinSolutionIterator base = new MinSolutionIterator(this, formula, origBounds, options, extraOptions);
+		base.recordClauses();
+		return new ParallelEnumeration(base, workers);
+	}
+	
+	/**
+	 * Counts the minimal models of the given formula with respect to the given bounds 
+	 * (the ones solveAll() would return), up to the given limit. The models are found 
+	 * and ruled out as by solveAll(), but not interpreted, checked against the SBP 
+	 * (unless forceRespectSB requires it) or kept. The budgets of the MinExtraOptions
+	 * apply to each model; if one runs out before a model is found, the count stops there.
+	 * @return the number of minimal models, up to limit, and the statistics of the count.
+	 * @throws IllegalArgumentException - limit < 0
+	 * @see #solveAll(Formula, Bounds)
+	 */
+	public MinModelCount countMinimal(final Formula formula, final Bounds origBounds, long limit)
+		throws HigherOrderDeclException, UnboundLeafException, AbortedException {
+		if (!options.solver().incremental())
+			throw new IllegalArgumentException("cannot enumerate solutions without an incremental solver.");
+		if (limit < 0)
+			throw new IllegalArgumentException("limit must be non-negative: " + limit);
+		
+		final MinSolutionIterator iterator = new MinSolutionIterator(this, formula, origBounds, options, extraOptions);
+		iterator.counting = true;
+		
+		long count = 0;
+		boolean complete = false;
+		boolean provenMinimal = true;
+		final long start = System.currentTimeMillis();
+		while(count < limit) {
+			final MinSolution solution = iterator.advance();
+			if(solution.outcome() == MinSolution.Outcome.UNKNOWN)
+				break;
+			if(!solution.sat()) {
+				complete = true;
+				break;
+			}
+			if(solution.outcome() == MinSolution.Outcome.SATISFIABLE_NOT_PROVEN_MINIMAL)
+				provenMinimal = false;
+			count++;
+		}
+		final long solvingTime = System.currentTimeMillis() - start - iterator.translTime;
+		
+		final MinStatistics stats = (iterator.translation == null) 
+				? new MinStatistics(0, 0, 0, iterator.translTime, solvingTime)
+				: new MinStatistics(iterator.translation, iterator.translTime, solvingTime);
+		return new MinModelCount(count, complete, provenMinimal, stats);
+	}
+	
+	/**
+	 * Returns the first k minimal models of the given formula with respect to the given 
+	 * bounds, in the order solveAll() returns them, or all of them if there are fewer. 
+	 * The list stops early if the budget runs out before a model is found (see 
+	 * MinExtraOptions.setDeadlineMillis()). The models' instances are built when asked for.
+	 * @return the first k minimal models of the formula
+	 * @throws IllegalArgumentException - k < 0
+	 * @see #solveAll(Formula, Bounds)
+	 */
+	public List<MinSolution> firstK(final Formula formula, final Bounds origBounds, int k)
+		throws HigherOrderDeclException, UnboundLeafException, AbortedException {
+		if (!options.solver().incremental())
+			throw new IllegalArgumentException("cannot enumerate solutions without an incremental solver.");
+		if (k < 0)
+			throw new IllegalArgumentException("k must be non-negative: " + k);
+		
+		final MinSolutionIterator iterator = new MinSolutionIterator(this, formula, origBounds, options, extraOptions);
+		final List<MinSolution> result = new ArrayList<MinSolution>(Math.min(k, 64));
+		while(result.size() < k) {
+			final MinSolution solution = iterator.advance();
+			if(!solution.sat())
+				break;
+			result.add(solution);
+		}
+		return result;
+	}
+
 	/**
 	 * Augments a model from an iterator with a set of facts
 	 * @param formula the original FOL formula.
@@ -189,6 +417,29 @@ public final class MinSolver {
 	public MinSolutionIterator augment(final Formula formula, Iterator<MinSolution> prevIterator, 
 			Instance augmentWith)
 			throws HigherOrderDeclException, UnboundLeafException, AbortedException, ExplorationException {
+		final FlightEvents.Augment event = FlightEvents.augment();
+		if(event != null)
+			event.begin();
+		final long start = System.nanoTime();
+		final MinSolutionIterator iterator = augmentIterator(formula, prevIterator, augmentWith);
+		final MinMetrics metrics = MinMetrics.current();
+		if(metrics != null)
+			metrics.augmented(System.nanoTime() - start);
+		if(event != null && event.shouldCommit()) {
+			final boolean translated = (iterator.translation != null);
+			event.commit(translated ? iterator.translation.numPrimaryVariables() : 0,
+					translated ? iterator.solver().numberOfClauses() : 0,
+					(iterator.augments == null) ? 0 : iterator.augments.length);
+		}
+		return iterator;
+	}
+	
+	/**
+	 * Does the work of augment(), which times it.
+	 */
+	private MinSolutionIterator augmentIterator(final Formula formula, Iterator<MinSolution> prevIterator, 
+			Instance augmentWith)
+			throws HigherOrderDeclException, UnboundLeafException, AbortedException, ExplorationException {
 		
 		if (!options.solver().incremental())
 			throw new IllegalArgumentException("cannot enumerate solutions without an incremental solver.");
@@ -212,7 +463,7 @@ public final class MinSolver {
 		}
 		
 		// Augmenting is always performed on skolemBounds.
-		Bounds skBounds = ((MinReporterToGatherSkolemBounds)options.reporter()).skolemBounds;
+		Bounds skBounds = msiterator.getSkolemBounds();
 		
 		ArrayList<Integer> allAugments = new ArrayList<Integer>();
 		
@@ -224,7 +475,7 @@ public final class MinSolver {
 		for(Relation r : solutionTuples.keySet()){
 			TupleSet tuples = solutionTuples.get(r);
 			for(Tuple t: tuples){
-				int index = MinTwoWayTranslator.getPropVariableForTuple(skBounds, msiterator.getTranslation(), r, t);
+				int index = MinTwoWayTranslator.getPropVariableForTuple(msiterator.getTranslation(), r, t);
 				//if there is no primary variables assigned to this relation, continue.
 				if(index == -1)
 					continue;
@@ -239,7 +490,7 @@ public final class MinSolver {
 					if(solutionTuples.get(r).contains(t))
 						throw new ExplorationException("The fact " + t + " is already true in the solution.");
 
-					int index = MinTwoWayTranslator.getPropVariableForTuple(skBounds, msiterator.getTranslation(), r, t);					
+					int index = MinTwoWayTranslator.getPropVariableForTuple(msiterator.getTranslation(), r, t);					
 					//if there is no primary variables assigned to this relation, continue.
 					if(index == -1)
 						continue;
@@ -248,10 +499,32 @@ public final class MinSolver {
 				}
 		}
 		
-		// We want the same MinSolver, because MinSolver governs
-		// the active iterator and allows the iterators to share the SAT solver.
-		MinSolutionIterator iterator = new MinSolutionIterator(this, formula, skBounds, options, extraOptions, allAugments, msiterator);
-				
+		// The same augmentation may have been made before; if so, replay its models.
+		final AugmentationCache cache = augmentationCache();
+		final int[] key = MinSolutionIterator.toIntCollection(allAugments);
+		Arrays.sort(key);
+		if(cache != null) {
+			AugmentationCache.History history = cache.get(msiterator.getTranslation(), key);
+			if(history != null) {
+				MinSolutionIterator iterator = new MinSolutionIterator(this, formula, skBounds, options, extraOptions, allAugments, msiterator);
+				iterator.history = history;
+				return iterator;
+			}
+		}
+		
+		// The speculator may have made this augmentation already.
+		MinSolutionIterator iterator = null;
+		final AugmentationSpeculator speculator = speculator();
+		if(speculator != null)
+			iterator = speculator.claim(msiterator, allAugments);
+		
+		// The new iterator shares the previous iterator's translation, and so its SAT solver.
+		// It guards its own cone restrictions with a selector of its own (see claimSATSolver()).
+		if(iterator == null)
+			iterator = new MinSolutionIterator(this, formula, skBounds, options, extraOptions, allAugments, msiterator);
+		
+		if(cache != null)
+			cache.put(msiterator.getTranslation(), key, iterator.history);
 		return iterator;
 	}	
 	
@@ -268,7 +541,7 @@ public final class MinSolver {
 		if(theIterator.trivial)
 		{
 			// No translation available to augment. Get the upper bounds - the lower bounds:
-			Bounds skBounds = ((MinReporterToGatherSkolemBounds)options.reporter()).skolemBounds;			
+			Bounds skBounds = theIterator.getSkolemBounds();			
 			Instance results = new Instance(skBounds.universe());			
 			for(Relation r : skBounds.relations())
 			{				
@@ -277,14 +550,14 @@ public final class MinSolver {
 				results.add(r, tuples);							
 			}
 			
-			logger.debug("getConsistentFacts: "+results);			
+			if(logger.isDebugEnabled())
+				logger.debug("getConsistentFacts: "+results);			
 			return results;
 		}
 
 		// If not trivial, go through the propositional translation
 		return MinTwoWayTranslator.translatePropositions(
-				theIterator.translation, ((MinReporterToGatherSkolemBounds)theIterator.options.reporter()).skolemBounds,
-				theIterator.mapVarToRelation,
+				theIterator.translation, theIterator.getSkolemBounds(),
 				theIterator.getConsistentFacts()); 
 	}
 	
@@ -319,7 +592,7 @@ public final class MinSolver {
 		MinSolutionIterator miniterator = ((MinSolutionIterator)iterator);
 		MinTranslation translation = miniterator.translation;	
 		
-		Bounds bounds = ((MinReporterToGatherSkolemBounds)options.reporter()).skolemBounds;
+		Bounds bounds = miniterator.getSkolemBounds();
 		
 		// Keeps the pattern of the output when a NEW is involved. The outputs that have
 		// repetitive patterns will be discarded.
@@ -342,7 +615,7 @@ public final class MinSolver {
 			for(Tuple t: tuples){
 				if(!miniterator.trivial)
 				{
-					int index = MinTwoWayTranslator.getPropVariableForTuple(bounds, translation, r, t);
+					int index = MinTwoWayTranslator.getPropVariableForTuple(translation, r, t);
 					// if there are no primary variables assigned to this relation, continue.
 					if(index == -1)
 						continue;
@@ -467,7 +740,7 @@ public final class MinSolver {
 			stringComponentsGiven.add(tokenizer.nextToken().trim());
 		}
 
-		Bounds bounds = ((MinReporterToGatherSkolemBounds)options.reporter()).skolemBounds;
+		Bounds bounds = ((MinSolutionIterator)iterator).getSkolemBounds();
 		
 		Set<Relation> relations = bounds.relations();
 		Relation relation = null;
@@ -575,10 +848,29 @@ public final class MinSolver {
 	
 	
 	/**
-	 * Returns the bounds after skolemization.
+	 * Returns the bounds after skolemization of the spec translated last (by any iterator).
+	 * @see MinSolutionIterator#getSkolemBounds()
 	 */
 	public Bounds getSkolemBounds(){
-		return ((MinReporterToGatherSkolemBounds)options.reporter()).skolemBounds;
+		return lastSkolemBounds;
+	}
+	
+	/**
+	 * Returns a copy of the given options that reports to the given reporter.
+	 */
+	private static Options copyOf(Options options, Reporter reporter) {
+		final Options copy = new Options();
+		copy.setSolver(options.solver());
+		copy.setReporter(reporter);
+		copy.setIntEncoding(options.intEncoding());
+		copy.setBitwidth(options.bitwidth());
+		copy.setFlatten(options.flatten());
+		copy.setSymmetryBreaking(options.symmetryBreaking());
+		copy.setSharing(options.sharing());
+		copy.setSkolemDepth(options.skolemDepth());
+		copy.setLogTranslation(options.logTranslation());
+		copy.setCoreGranularity(options.coreGranularity());
+		return copy;
 	}
 	
 	/**
@@ -627,7 +919,7 @@ public final class MinSolver {
 	 *          instance.tuples' = bounds.lowerBound ++ instance.tuples
 	 * @return instance
 	 */
-	private static Instance padInstance(Instance instance, Bounds bounds) {
+	static Instance padInstance(Instance instance, Bounds bounds) {
 		for (Relation r : bounds.relations()) {
 			if (!instance.contains(r)) {
 				instance.add(r, bounds.lowerBound(r));
@@ -662,9 +954,24 @@ public final class MinSolver {
 	 * @author Emina Torlak
 	 */
 	public static final class MinSolutionIterator implements Iterator<MinSolution> {
+		/**
+		 * A copy of the MinSolver's options that reports to this iterator's own reporter.
+		 */
 		private final Options options;
+		private final MinReporterToGatherSkolemBounds reporter;
 		private final MinExtraOptions extraOptions;
 		
+		/**
+		 * The skolem bounds of the iterator this one augments, or null if this iterator 
+		 * translates the spec itself (its reporter then gathers them).
+		 */
+		private final Bounds inheritedSkolemBounds;
+		
+		/**
+		 * Whether only models satisfying the SBP are returned (see MinExtraOptions.setForceRespectSB()).
+		 */
+		private final boolean forceRespectSB;
+		
 		private Formula formula;
 		
 		/**
@@ -676,7 +983,6 @@ public final class MinSolver {
 		private boolean trivial = false;
 		
 		private MinTranslation translation;
-		private Map<Integer, Relation> mapVarToRelation;
 		private long translTime;
 		private MinSolution lastSolution;
 		
@@ -695,28 +1001,107 @@ public final class MinSolver {
 		
 		/**
 		 * Keeps cone restriction clauses such that the next model from the SATsolver
-		 * is not in any of the previous cones.
+		 * is not in any of the previous cones. Only clauses that no earlier clause 
+		 * subsumes are added to the solver.
 		 */
-		private Set<Set<Integer>> coneRestrictionClauses = new HashSet<Set<Integer>>();
+		private final ConeClauseStore coneRestrictionClauses = new ConeClauseStore();
+		private final List<IConstr> retiredConeRestrictions = new ArrayList<IConstr>();
+		
 		/**
-		 * Keeps a list of all the constraints that are being taken into account.
-		 * Some operations such as getConsistentFacts() has to eliminate all the constraints.
-		 * Also, when another iterator is using the solver, the constraints from
-		 * the current iterator should be removed.
+		 * The selector variable guarding this iterator's cone restriction clauses in the 
+		 * (shared) SAT solver. The clauses are only enforced while this iterator holds the 
+		 * solver; other iterators and getConsistentFacts() switch them off by changing the
+		 * solver's active scope, not by removing them. 0 until the translation exists.
 		 */
-		private Set<IConstr> coneRestrictionConstraints = new HashSet<IConstr>();
-
+		private int coneScope = 0;
+		
+		/**
+		 * This iterator's own SAT solver if extraOptions.solverPerIterator() is set and this
+		 * iterator is an augmentation; otherwise null, and the iterator uses translation.cnf().
+		 */
+		private MinSATSolver ownSolver = null;
+		
+		/**
+		 * The solution next() returns next, if the speculator computed it ahead of time.
+		 */
+		private MinSolution prefetched = null;
+		
 		/**
-		 * Keeps a list of all the unit constraints due to a bug in SAT4J that does not
-		 * return a handle to remove unit constraints.
+		 * If this is an augmentation and augmentations are cached: the solutions found for
+		 * its augments so far, by this iterator or an earlier one, which next() replays
+		 * before solving; and the number of them this iterator has returned. The cone 
+		 * clauses the last call to nonTrivialSolution() made are recorded with its solution.
 		 */
-		private Set<Integer> coneRestrictionUnits = new HashSet<Integer>();
+		private AugmentationCache.History history = null;
+		private int historyIndex = 0;
+		private final List<int[]> recentConeClauses = new ArrayList<int[]>();
 		
 		/**
 		 * The augments for this iterator.
 		 */
 		private final int[] augments;
 		
+		/**
+		 * Set for MinSolver.countMinimal(): models are found and ruled out, but not 
+		 * reported. Each is returned as a solution without an instance, and is not checked
+		 * against the SBP unless forceRespectSB requires it.
+		 */
+		private boolean counting = false;
+		
+		/**
+		 * If this iterator is a worker of a ParallelEnumeration: the assumptions of the 
+		 * cube it is enumerating. Only candidates are searched for within the cube; they
+		 * are minimized without it. Null otherwise (and always for augmentations).
+		 */
+		private int[] cube = null;
+		
+		/**
+		 * Buffers reused by every round of minimize() and getConsistentFacts(), so that
+		 * a round does not allocate: the assumptions of the next SAT call, the clause
+		 * being built, the facts still in play, and (in facts, over primary variables) 
+		 * the facts already assumed or found. Allocated with the translation.
+		 */
+		private final IntStack assumptions = new IntStack();
+		private final IntStack clause = new IntStack();
+		private final IntStack pending = new IntStack();
+		private final IntStack scratch = new IntStack();
+		private final List<IConstr> temporaryConstraints = new ArrayList<IConstr>();
+		
+		/* the time and SAT work spent on the solution being found, for its MinStatistics */
+		private final SolveCounters counters = new SolveCounters();
+		/* the number of models found so far, which numbers the Flight Recorder events */
+		private int modelsFound = 0;
+		private IntBitSet facts = null;
+		
+		/**
+		 * The CFs of the last model found, and that model's propositional model (by 
+		 * identity), or null until getConsistentFacts() is called for it.
+		 */
+		private int[] consistentFacts = null;
+		private int[] consistentFactsModel = null;
+		
+		/**
+		 * Models of the CNF found while minimizing candidates and searching for consistent 
+		 * facts, which witness the facts of later models below them. Made on first use.
+		 */
+		private WitnessLog witnesses = null;
+		
+		/**
+		 * The budget of the call to next() or getConsistentFacts() in progress, or null; 
+		 * the time by which every call must return (see setDeadline()), or 0; and whether
+		 * cancel() has been called.
+		 */
+		private volatile SolveBudget budget = null;
+		private volatile long deadline = 0;
+		private volatile boolean cancelled = false;
+		
+		/**
+		 * Whether the model last found by solve() was proven minimal, and whether the 
+		 * consistent facts last computed are all of them (the budget did not run out).
+		 */
+		private boolean minimal = true;
+		private boolean consistentFactsComplete = true;
+		
 		/**
 		 * Constructs a solution iterator for the given formula, bounds, and options.
 		 */
@@ -743,16 +1128,53 @@ public final class MinSolver {
 			this.minSolver = minSolver;
 			this.formula = formula;
 			this.origBounds = origBounds;
-			this.options = options;
+			this.reporter = new MinReporterToGatherSkolemBounds(options.reporter());
+			this.options = copyOf(options, reporter);
 			this.extraOptions = extraOptions;
+			this.inheritedSkolemBounds = (prevIterator == null) ? null : prevIterator.getSkolemBounds();
+			this.forceRespectSB = extraOptions.forceRespectSB() || minSolver.forceRespectSB;
 			this.translation = null;
 			this.augments = (augs == null) ? null : toIntCollection(augs);					
 			
 			if(prevIterator != null){  //if augmenting on a previous iterator
 				this.translation = prevIterator.getTranslation();
-				this.mapVarToRelation = prevIterator.mapVarToRelation;		
 				this.parentHash = prevIterator.hashCode();
-			}
+				
+				// Replay the translation's clauses rather than re-translating (if it recorded them).
+				if(augs != null && extraOptions.solverPerIterator() && translation.cnf().replicable())
+					this.ownSolver = translation.cnf().replicate();
+				
+				if(augs != null && extraOptions.augmentationCacheSize() > 0)
+					this.history = new AugmentationCache.History();
+			} else if(extraOptions.replicatesSolvers())
+				recordClauses();
+			
+			final MinMetrics metrics = MinMetrics.current();
+			if(metrics != null)
+				metrics.iteratorCreated(this);
+		}
+		
+		/**
+		 * Constructs a worker for a ParallelEnumeration of base's minimal models: an 
+		 * iterator over base's translation, working on the given solver, with no cube
+		 * until setCube() is called.
+		 * @requires base.translate()
+		 */
+		static MinSolutionIterator cubeWorker(MinSolutionIterator base, MinSATSolver solver) {
+			MinSolutionIterator worker = new MinSolutionIterator(base.minSolver, base.formula, base.origBounds, 
+					base.minSolver.options, base.extraOptions, null, base);
+			worker.ownSolver = solver;
+			worker.translTime = base.translTime;
+			return worker;
+		}
+		
+		/**
+		 * Makes the translation record its clauses, so that its solver can be replicated
+		 * (see MinSATSolver.replicate()). Nothing is recorded otherwise.
+		 * @requires the spec is not translated yet
+		 */
+		void recordClauses() {
+			options.setSolver(MinSATSolver.recording(options.solver()));
 		}
 		
 		/**
@@ -768,7 +1190,8 @@ public final class MinSolver {
 			result.append("Iterator augmentations:"+Arrays.toString(augments)+"\n");
 			result.append("Iterator translation's num pri vars:"+translation.numPrimaryVariables()+"\n");
 			result.append("Iterator solver's hash code:"+minSolver.hashCode()+"\n");
-			result.append("Iterator mapVarToRelation:"+mapVarToRelation+"\n");
+			result.append("Iterator has own SAT solver:"+(ownSolver != null)+"\n");
+			result.append("Iterator cone restriction clauses:"+coneRestrictionClauses.size()+"\n");
 			return result.toString();
 		}
 		
@@ -776,7 +1199,7 @@ public final class MinSolver {
 		 * Returns true if there is another solution.
 		 * @see java.util.Iterator#hasNext()
 		 */
-		public boolean hasNext() {
+		public synchronized boolean hasNext() {
 			// Can no longer set formula=null; instead use unsatSolution (reversed)
 			return (unsatSolution == null);
 		}
@@ -790,23 +1213,16 @@ public final class MinSolver {
 		 * @return current solution
 		 */
 		private MinSolution nonTrivialSolution() {						
+			// The cone clauses of a call that ran out of budget belong to the next solution.
+			if(lastSolution == null || lastSolution.outcome() != MinSolution.Outcome.UNKNOWN)
+				recentConeClauses.clear();
 			try {
-				final MinSATSolver internalSolver = translation.cnf();
-				
-				try{
-					// If all the previous constraints have been removed by another operation,
-					// add them again.
-					if(coneRestrictionConstraints.isEmpty()){
-						addAllClauses();
-					}
-				}
-				catch(ContradictionException e){
-					logger.info("CONTRADICTION exception in nonTrivialSolution()");
-				}
+				final MinSATSolver internalSolver = solver();
 				
 				////////////////////////////////////////////////////////
 				options.reporter().solvingCNF(translation.numPrimaryVariables(), internalSolver.numberOfVariables(), internalSolver.numberOfClauses());				
 				final long startSolve = System.currentTimeMillis();				
+				counters.start(internalSolver);
 				boolean isSat = false;				
 
 				//System.out.println("Finding a non trivial solution...");
@@ -818,14 +1234,26 @@ public final class MinSolver {
 				// Possibly add more sets of CR clauses if SBP must be respected					
 				do {
 					// Get the next minimal model, if any				
-					isSat = solve();
+					try {
+						isSat = solve();
+					} catch(BudgetExhaustedException e) {
+						// No model yet. The iterator is not exhausted, so the caller may ask again.
+						logger.info("Out of budget before finding a model: "+e.getMessage());
+						return MinSolution.unknown(statistics(internalSolver, startSolve));
+					}
 
 					if(isSat) 
 					{					
 						final int primary = translation.numPrimaryVariables();					
 						final Set<Integer> notModel = new HashSet<Integer>();		
 						
-						respectsSB = translation.satisfiesSBP(translation.cnf().getLastModel());						
+						// Only needed to skip the models that do not respect the SBP.
+						if(forceRespectSB) {
+							final long start = System.nanoTime();
+							respectsSB = translation.satisfiesSBP(internalSolver.getLastModel());
+							counters.add(MinStatistics.Phase.SBP_CHECK, start);
+						} else
+							respectsSB = true;
 						/*if(minSolver.forceRespectSB)
 						{							
 							System.out.println("Must respect SB. Result: "+respectsSB);													
@@ -841,13 +1269,18 @@ public final class MinSolver {
 						}
 																								
 						try{	
-							logger.debug(translation.permutations.toString());
+							if(logger.isDebugEnabled())
+								logger.debug(translation.permutations.toString());
 							// Add the cone restriction for this model:
+							long start = System.nanoTime();
 							addConeRestriction(notModel, internalSolver);
+							counters.add(MinStatistics.Phase.CONE_RESTRICTION, start);
 							// Add the cone restriction for all (safe) adjacent transpositions.
 							// (If forcing results to respect SBP, this function needs to make sure it doesn't add a cone-restriction clause
 							// for SBP-respecting solutions, or it risks preventing us from seeing the canonical soln we need.) 							 							
+							start = System.nanoTime();
 							addPermConeRestrictions(notModel, internalSolver);
+							counters.add(MinStatistics.Phase.PERMUTED_CONE_RESTRICTION, start);
 						}
 						catch(ContradictionException e) {
 							// This iterator is now out of models. Either we just gave the empty model,
@@ -861,17 +1294,24 @@ public final class MinSolver {
 						}
 																
 						// Keep going until we either run out of models or find one that respects the SBP  
+						// (or run out of budget: a model that is not proven minimal is returned as is)
 					}
-				} while(isSat && minSolver.forceRespectSB && !respectsSB);											
+				} while(isSat && forceRespectSB && !respectsSB && minimal);											
 			
-			final long endSolve = System.currentTimeMillis();				
-			final MinStatistics stats = new MinStatistics(translation, translTime, endSolve - startSolve);
-				
 			if(isSat) {
 				/////////////////////////////////////////////
-				// Found a minimal model: report it				
-				int[] minPropositionalModel = translation.cnf().getLastModel().clone();
-				MinReporterToGatherSkolemBounds reporter = (MinReporterToGatherSkolemBounds)options.reporter();
+				// Found a minimal model: report it
+				if(DiagnosticTrace.enabled())
+					DiagnosticTrace.record("model", truePrimaryVariables(internalSolver.getLastModel()), reporter.getIterations());
+				if(counting) {
+					// Counted, never shown: no SBP check, nothing kept.
+					final MinStatistics stats = statistics(internalSolver, startSolve);
+					modelFound();
+					return minimal 
+							? MinSolution.satisfiable(stats, (Instance) null, null, null, true)
+							: MinSolution.notProvenMinimal(stats, (Instance) null, null, null, true);
+				}
+				final int[] minPropositionalModel = internalSolver.getLastModel();
 				MinimizationHistory history = null;
 				if(extraOptions.logMinimizationHistory())
 					history = new MinimizationHistory(reporter.getIterations(), reporter.getReducedElements(), 
@@ -880,19 +1320,33 @@ public final class MinSolver {
 				//////////////////////////////////////////
 				// Does this solution satisfy the SBP?
 				// If not, flag this solution as spurious (we're guaranteed to get an isomorph either before or after)
+				final long startCheck = System.nanoTime();
 				boolean isCanonical = translation.satisfiesSBP(minPropositionalModel);										
+				counters.add(MinStatistics.Phase.SBP_CHECK, startCheck);
+				final MinStatistics stats = statistics(internalSolver, startSolve);
+				modelFound();
 					
 				////////////////////////////////////////
-				// extract the current solution; can't use the sat(..) method because it frees the sat solver
-				final MinSolution sol = 
-						MinSolution.satisfiable(stats, padInstance(translation.interpret(), origBounds), 
-								                history, minPropositionalModel, isCanonical);
+				// extract the current solution; can't use the sat(..) method because it frees the sat solver.
+				// Only the true primary variables are kept: the instance is built if asked for.
+				final int primary = translation.numPrimaryVariables();
+				final IntBitSet truePrimaryVariables = new IntBitSet(primary + 1);
+				for(int i = 1; i <= primary; i++) {
+					if(minPropositionalModel[i - 1] > 0)
+						truePrimaryVariables.add(i);
+				}
+				final MinSolution sol = minimal 
+						? MinSolution.satisfiable(stats, translation, truePrimaryVariables, origBounds, history, isCanonical)
+						: MinSolution.notProvenMinimal(stats, translation, truePrimaryVariables, origBounds, history, isCanonical);
 				return sol;				
 			}
 			else {
 				//////////////////////////////////////
 				// No viable solution remaining
-				unsatSolution = unsat(translation, stats); 
+				unsatSolution = unsat(translation, statistics(internalSolver, startSolve)); 
+				// A worker is given another cube, and needs its clauses for that.
+				if(cube == null)
+					releaseConeScope();
 				return unsatSolution;
 			}
 		} catch (SATAbortedException sae) {
@@ -900,6 +1354,70 @@ public final class MinSolver {
 		}				
 	}
 				
+		/**
+		 * Returns the next solution of this (augmented) iterator's history, adding the 
+		 * cone restrictions it added, if the history has it; otherwise finds the next 
+		 * solution and records it in the history.
+		 */
+		private MinSolution historicSolution() {
+			MinSolution solution = history.solution(historyIndex);
+			if(solution != null) {
+				final MinSATSolver internalSolver = solver();
+				try {
+					for(int[] clause : history.coneClauses(historyIndex))
+						addConeRestriction(clause, internalSolver);
+				} catch(ContradictionException e) {
+					logger.info("Contradiction while replaying cone restrictions.");
+				}
+				if(!solution.sat()) {
+					unsatSolution = solution;
+					releaseConeScope();
+				}
+			} else {
+				solution = nonTrivialSolution();
+				if(solution.outcome() == MinSolution.Outcome.UNKNOWN)
+					return solution;
+				// A model that is not proven minimal ends the history: another iterator may do better.
+				if(solution.outcome() != MinSolution.Outcome.SATISFIABLE_NOT_PROVEN_MINIMAL)
+					history.record(historyIndex, solution, recentConeClauses);
+			}
+			historyIndex++;
+			return solution;
+		}
+		
+		/**
+		 * Returns the statistics of the solution being found, which was started at the
+		 * given time (as given by System.currentTimeMillis()), and stops its counters.
+		 */
+		private MinStatistics statistics(MinSATSolver internalSolver, long startSolve) {
+			counters.stop(internalSolver);
+			return new MinStatistics(translation, translTime, System.currentTimeMillis() - startSolve, counters);
+		}
+		
+		/**
+		 * Counts the model just found, and tells the metrics, if any, about it.
+		 * @requires the counters are stopped
+		 */
+		private void modelFound() {
+			modelsFound++;
+			final MinMetrics metrics = MinMetrics.current();
+			if(metrics != null)
+				metrics.modelFound(counters.satCalls - counters.counts[MinStatistics.Phase.CANDIDATE_SEARCH.ordinal()], 
+						coneRestrictionClauses.size());
+		}
+		
+		/**
+		 * Returns the number of primary variables true in the given propositional model.
+		 */
+		private int truePrimaryVariables(int[] propositionalModel) {
+			int count = 0;
+			for(int i = 0; i < translation.numPrimaryVariables(); i++) {
+				if(propositionalModel[i] > 0)
+					count++;
+			}
+			return count;
+		}
+		
 		/**
 		 * Add a clause for this negated positive-diagram.
 		 * 
@@ -911,27 +1429,32 @@ public final class MinSolver {
 				throws ContradictionException
 		{						
 			// It is vital that notModel be a SET, not a LIST (the literals can be transposed).
-			
-			if(notModel.size() == 1)
-			{
-				// No risk of adding duplicates; it's just a set.
-				for(int unit : notModel)
-					coneRestrictionUnits.add(unit);
-			}
-			else
-			{				
-				// Avoid adding duplicate clauses to the *SAT SOLVER*. Adding duplicate 
-				// clauses ought to be idempotent, but it is not: the same IConstr
-				// is returned, and removeConstraint will only end up removing the 
-				// *FIRST* such clause, not all of them. So never add duplicates!
-				if(coneRestrictionClauses.contains(notModel))
-					return;								
-				
-				// (This will be called if notModel.size() ==0, triggering the exception.)							
-				coneRestrictionConstraints.add(internalSolver.addConstraint(toIntCollection(notModel)));
-				coneRestrictionClauses.add(notModel);
-								
-			}			
+			int[] clause = ConeClauseStore.sorted(toIntCollection(notModel));
+			recentConeClauses.add(clause);
+			addConeRestriction(clause, internalSolver);
+		}
+		
+		/**
+		 * Add the given cone-restriction clause, unless a clause already added subsumes it.
+		 * @requires clause is sorted
+		 */
+		private void addConeRestriction(int[] clause, MinSATSolver internalSolver)
+				throws ContradictionException
+		{
+			// Avoid adding duplicate (or weaker) clauses to the SAT solver. 
+			if(coneRestrictionClauses.subsumes(clause))
+				return;								
+			
+			// Guarded by this iterator's selector, so units need no special treatment, and
+			// the empty clause (after giving the empty model) only exhausts this iterator.
+			IConstr constraint = internalSolver.addScopedClause(coneScope, clause);
+			
+			// Drop the clauses the new one makes redundant. (The empty clause is kept: SAT4J 
+			// cannot remove the unit clause it becomes, and releasing the scope satisfies it.)
+			coneRestrictionClauses.add(clause, (clause.length == 0) ? null : constraint, retiredConeRestrictions);
+			for(int ii = 0; ii < retiredConeRestrictions.size(); ii++)
+				internalSolver.removeScopedClause(retiredConeRestrictions.get(ii));
+			retiredConeRestrictions.clear();
 		}
 		
 		/**
@@ -967,7 +1490,7 @@ public final class MinSolver {
 				
 				// Does this permutation get us to a canonical model? Then don't rule it out!
 				// TODO: really we should cache it somehow
-				if(minSolver.forceRespectSB && translation.negationSatisfiesSBP(permNotModel)) {
+				if(forceRespectSB && translation.negationSatisfiesSBP(permNotModel)) {
 					//System.out.println("negation satisfies SBP and forceRespectSB = true. Continuing to avoid missing a canonical solution.");
 					continue;
 				}
@@ -975,7 +1498,8 @@ public final class MinSolver {
 				addConeRestriction(permNotModel, internalSolver);								
 				permCounter++;								
 				//System.out.println("Added perm. cone restriction "+permCounter);
-				logger.debug(permCounter+" Added restriction. notModel="+notModel+"\naPerm="+aPerm+"\npermNotModel="+permNotModel);				
+				if(logger.isDebugEnabled())
+					logger.debug(permCounter+" Added restriction. notModel="+notModel+"\naPerm="+aPerm+"\npermNotModel="+permNotModel);				
 			}			
 		}
 
@@ -1040,128 +1564,338 @@ public final class MinSolver {
 		 * Returns the next solution if any.
 		 * @see java.util.Iterator#next()
 		 */
-		public MinSolution next() {
-			if (!hasNext()) return unsatSolution;
-			
-			//System.out.println("Calling next()...");
-			
-			claimSATSolver();
-
-			if (translation==null) {
-				try {
-					translTime = System.currentTimeMillis();
-					translation = MinTranslator.translate(formula, origBounds, options);
-					translTime = System.currentTimeMillis() - translTime;
-					
-					//We use this data structure for translation:
-					//mapVarToRelation = MinTwoWayTranslator.buildVarToRelationMap(translation, bounds);
-					mapVarToRelation = MinTwoWayTranslator.buildVarToRelationMap(translation, 
-							((MinReporterToGatherSkolemBounds)options.reporter()).skolemBounds);
-					
-					// Print the translation (DEBUG ONLY!)
-					//String transStr = MinTwoWayTranslator.printTranslation(translation, 
-					//		((MyReporter)options.reporter()).skolemBounds,
-					//		mapVarToRelation);
-				  //	logger.debug(transStr);
-					
-					setLastSolution(nonTrivialSolution());
-				} catch (TrivialFormulaException tfe) {
-					translTime = System.currentTimeMillis() - translTime;
-					setLastSolution(trivialSolution(tfe));
-				} 
-			} else {
-				setLastSolution(nonTrivialSolution());
-			}						
-				
-			return getLastSolution();
+		public synchronized MinSolution next() {
+			final MinSolution solution;
+			if(prefetched != null) {
+				solution = prefetched;
+				prefetched = null;
+			} else
+				solution = advance();
+			
+			minSolver.movedOn(this, solution);
+			return solution;
 		}
-
+		
 		/**
-		 * Prepares the solver to be used by the current iterator.
+		 * Computes the first solution ahead of time, for the speculator; next() will 
+		 * return it. 
+		 * @requires this iterator has its own solver and next() has not been called
 		 */
-		private void claimSATSolver() {
-			
-			if(translation != null)
-				logger.debug("before claim: "+((MinSATSolver)translation.cnf()).printConstraints());
-
-			
-			if(minSolver.activeIterator != null && minSolver.activeIterator != this)
-			{
-				//Remove all the constraints of the previous active iterator.
-				minSolver.activeIterator.removeAllConstraints();
-				//Add the constraints of the current iterator.
-				try{
-					if(coneRestrictionConstraints.isEmpty())
-						addAllClauses();
-				}
-				catch(ContradictionException e){
-					logger.info("CONTRADICTION exception in claimSATSolver()");
-				}
-			}
-			//if(translation != null)
-        //logger.debug("after claim: "+((MinSATSolver)translation.cnf()).printConstraints());
-			
-			//Set the activeIterator
-			minSolver.activeIterator = this;
-			
-			//Deactivate SBP if the iterator is augmented by some fact.
-			if(translation != null){
-				if(isAugmented()) //if the iterator is an augmentation
-					((MinSATSolver)translation.cnf()).deactivateSBP();
-				else
-					((MinSATSolver)translation.cnf()).activateSBP();
-			}
-		}		
+		synchronized void prefetch() {
+			prefetched = advance();
+			if(prefetched.outcome() == MinSolution.Outcome.UNKNOWN)
+				prefetched = null;
+		}
 		
 		/**
-		 * @see java.util.Iterator#remove()
+		 * Sets the time, as given by System.currentTimeMillis(), by which every call to 
+		 * next() or getConsistentFacts() must return, on top of the budget each call gets 
+		 * from the MinExtraOptions; 0 (the default) removes it. A call that runs out of time
+		 * returns what it has (see MinExtraOptions.setDeadlineMillis()).
 		 */
-		public void remove() {
-			throw new UnsupportedOperationException();
+		public void setDeadline(long deadline) {
+			if(deadline < 0)
+				throw new IllegalArgumentException("deadline must be non-negative: " + deadline);
+			this.deadline = deadline;
 		}
 		
 		/**
-		 * Prepares a minimal model. May not respect SBP.
-		 * @return true if there is a next solution; otherwise, false.
-		 * @throws NotMinimalModelException 
+		 * Cancels the call to next() or getConsistentFacts() in progress, if any, and every
+		 * later one: they return what they have, as if out of time. Safe to call from 
+		 * another thread.
 		 */
-		private boolean solve() {
-			// In case this iterator should never return a model again:
-			if(!hasNext()) return false;
-			
-			try{
-				Set<Integer> allUnits = new HashSet<Integer>();
-				allUnits.addAll(toSet(augments));
-				allUnits.addAll(coneRestrictionUnits);
-								
-				if(allUnits.size() == 0)
-					sat = Boolean.valueOf(translation.cnf().solve());
-				else
-					sat = Boolean.valueOf(translation.cnf().solve(toIntCollection(allUnits)));
+		public void cancel() {
+			cancelled = true;
+			final SolveBudget budget = this.budget;
+			if(budget != null)
+				budget.cancel();
+		}
 		
-				//	logger.debug(sat+" "+allUnits.size());
-				
-				if(sat) {	
-					try {
-						minimize();
-					}
-					catch(ContradictionException e)
-					{
-						logger.info("CONTRADICTION exception in minimize() call");
-					}
-				}		
-										
-				return sat;
-			} catch (org.sat4j.specs.TimeoutException e) {
-				throw new RuntimeException("timed out");
-			}
+		/**
+		 * Returns false if the budget ran out during the last call to getConsistentFacts(),
+		 * which then returned only the facts found until then.
+		 */
+		public boolean consistentFactsComplete() {
+			return consistentFactsComplete;
 		}
-
+		
 		/**
-		 * Minimizes the model in the SAT solver.
-		 * @throws TimeoutException
-		 * @throws ContradictionException
-		 * @throws NotMinimalModelException 
+		 * Starts the budget of a call to next() or getConsistentFacts(). The solvers the call
+		 * works on are attached to it by claimSATSolver() and computeConsistentFacts().
+		 */
+		private SolveBudget startBudget() {
+			long callDeadline = deadline;
+			if(extraOptions.deadlineMillis() > 0) {
+				final long perCall = System.currentTimeMillis() + extraOptions.deadlineMillis();
+				callDeadline = (callDeadline == 0) ? perCall : Math.min(callDeadline, perCall);
+			}
+			final SolveBudget budget = new SolveBudget(callDeadline, extraOptions.conflictBudget());
+			this.budget = budget;
+			if(cancelled)
+				budget.cancel();
+			return budget;
+		}
+		
+		/**
+		 * Ends the budget of the call that started it.
+		 */
+		private void endBudget(SolveBudget budget) {
+			this.budget = null;
+			budget.detach();
+		}
+		
+		/**
+		 * Returns this iterator's own SAT solver, or null if it works on the translation's.
+		 */
+		MinSATSolver ownSolver() {
+			return ownSolver;
+		}
+		
+		/**
+		 * Computes the next solution, if any. Unlike next(), does not tell the MinSolver 
+		 * (so no augmentations are speculated on): for the speculator and ParallelEnumeration.
+		 * Locks the iterator, then its solver, like next().
+		 */
+		synchronized MinSolution advance() {
+			if (!hasNext()) return unsatSolution;
+			
+			//System.out.println("Calling next()...");
+			
+			final SolveBudget budget = startBudget();
+			try {
+				advanceWithin();
+			} finally {
+				endBudget(budget);
+			}
+			return getLastSolution();
+		}
+		
+		/**
+		 * Computes the next solution within the budget of the call.
+		 */
+		private void advanceWithin() {
+			if (!translate())
+				return;
+			
+			// The iterators sharing the translation's solver take turns on it.
+			synchronized(solver()) {
+				claimSATSolver();
+				setLastSolution((history == null) ? nonTrivialSolution() : historicSolution());
+			}
+		}
+
+		/**
+		 * Translates the spec, unless done already. If the formula is trivial, the trivial
+		 * solution becomes the last solution instead, and the iterator is done solving.
+		 * @return true if there is a translation to solve
+		 */
+		boolean translate() {
+			if (translation != null)
+				return true;
+			if (trivial)
+				return false;
+			
+			final FlightEvents.Translate event = FlightEvents.translate();
+			if(event != null)
+				event.begin();
+			try {
+				translTime = System.currentTimeMillis();
+				translation = MinTranslator.translate(formula, origBounds, options);
+				translTime = System.currentTimeMillis() - translTime;
+				
+				// Print the translation (DEBUG ONLY!)
+				//String transStr = MinTwoWayTranslator.printTranslation(translation, 
+				//		((MyReporter)options.reporter()).skolemBounds);
+			  //	logger.debug(transStr);
+			} catch (TrivialFormulaException tfe) {
+				translTime = System.currentTimeMillis() - translTime;
+				if(event != null && event.shouldCommit())
+					event.commit(0, 0, 0, true);
+				minSolver.lastSkolemBounds = getSkolemBounds();
+				setLastSolution(trivialSolution(tfe));
+				return false;
+			} 
+			if(event != null && event.shouldCommit())
+				event.commit(translation.numPrimaryVariables(), translation.cnf().numberOfVariables(), 
+						translation.cnf().numberOfClauses(), false);
+			minSolver.lastSkolemBounds = getSkolemBounds();
+			return true;
+		}
+		
+		/**
+		 * Makes this worker of a ParallelEnumeration search the given cube for candidates 
+		 * from now on. The iterator has a next solution again, until the cube runs out.
+		 */
+		synchronized void setCube(int[] cube) {
+			this.cube = cube;
+			this.unsatSolution = null;
+		}
+		
+		/**
+		 * Returns the cone restriction clauses the last call to next() added (sorted), 
+		 * for ParallelEnumeration to share with the other workers.
+		 */
+		List<int[]> recentConeClauses() {
+			return recentConeClauses;
+		}
+		
+		/**
+		 * Removes this iterator's cone restriction clauses from the solver and releases 
+		 * its scope, so that later SAT calls neither carry its selector nor its clauses.
+		 * @requires the caller holds the solver, and this iterator is done with it
+		 */
+		private void releaseConeScope() {
+			if(coneScope == 0)
+				return;
+			final MinSATSolver internalSolver = solver();
+			coneRestrictionClauses.clear(retiredConeRestrictions);
+			for(int ii = 0; ii < retiredConeRestrictions.size(); ii++)
+				internalSolver.removeScopedClause(retiredConeRestrictions.get(ii));
+			retiredConeRestrictions.clear();
+			internalSolver.releaseScope(coneScope);
+			coneScope = 0;
+		}
+		
+		/**
+		 * Releases what this iterator keeps in the SAT solver it shares with other 
+		 * iterators (its cone restrictions), for an iterator that will not be used again.
+		 * Iterators release it themselves once they run out of models. Afterwards the 
+		 * iterator has no next solution. An iterator that has not translated its spec
+		 * yet keeps nothing in the solver, and is left as is.
+		 */
+		public synchronized void free() {
+			if(translation == null)
+				return;
+			// The iterator is locked before the solver, as when solving.
+			synchronized(solver()) {
+				releaseConeScope();
+				if(unsatSolution == null)
+					unsatSolution = unsat(translation, new MinStatistics(translation, translTime, 0));
+			}
+		}
+		
+		/**
+		 * Adds a cone restriction clause found by another worker of a ParallelEnumeration.
+		 * @requires clause is sorted
+		 */
+		synchronized void addSharedConeRestriction(int[] clause) {
+			final MinSATSolver internalSolver = solver();
+			if(coneScope == 0)
+				coneScope = internalSolver.newScope();
+			try {
+				addConeRestriction(clause, internalSolver);
+			} catch(ContradictionException e) {
+				logger.info("Contradiction while adding a shared cone restriction.");
+			}
+		}
+		
+		/**
+		 * Returns the SAT solver this iterator works on: its own, if it has one, 
+		 * otherwise the (shared) solver of the translation.
+		 * @requires this.translation != null
+		 */
+		private MinSATSolver solver() {
+			return (ownSolver != null) ? ownSolver : translation.cnf();
+		}
+		
+		/**
+		 * Prepares the solver to be used by the current iterator: switches on this iterator's
+		 * cone restrictions (and off those of any other iterator sharing the solver), and 
+		 * sets the SBP as appropriate. 
+		 * @requires this.translation != null
+		 */
+		private void claimSATSolver() {
+			
+			final FlightEvents.ClaimSolver event = FlightEvents.claimSolver();
+			if(event != null)
+				event.begin();
+			MinSATSolver solver = solver();
+			// printConstraints() walks every constraint in SAT4J.
+			if(logger.isDebugEnabled())
+				logger.debug("before claim: "+solver.printConstraints());
+			
+			// An iterator that ran out of models has released its scope for good.
+			if(coneScope == 0 && hasNext())
+				coneScope = solver.newScope();
+			solver.setActiveScope(coneScope);
+			
+			if(budget != null)
+				budget.attach(solver);
+			DiagnosticTrace.record("claim", coneScope, coneRestrictionClauses.size());
+			
+			//Deactivate SBP if the iterator is augmented by some fact.
+			if(isAugmented()) //if the iterator is an augmentation
+				solver.deactivateSBP();
+			else
+				solver.activateSBP();
+			
+			if(event != null && event.shouldCommit())
+				event.commit(modelsFound, translation.numPrimaryVariables(), solver.numberOfClauses(), 
+						coneRestrictionClauses.size());
+		}		
+		
+		/**
+		 * @see java.util.Iterator#remove()
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		/**
+		 * Prepares a minimal model. May not respect SBP. If the budget runs out while 
+		 * minimizing, prepares the smallest model found and clears this.minimal.
+		 * @return true if there is a next solution; otherwise, false.
+		 * @throws BudgetExhaustedException if the budget runs out before a model is found
+		 * @throws NotMinimalModelException 
+		 */
+		private boolean solve() {
+			// In case this iterator should never return a model again:
+			if(!hasNext()) return false;
+			
+			final FlightEvents.Solve event = FlightEvents.solve();
+			if(event != null)
+				event.begin();
+			try{
+				// A worker's candidates come from its cube (workers are never augmentations).
+				final int[] candidateAssumptions = (cube != null) ? cube : augments;
+				final long start = System.nanoTime();
+				if(candidateAssumptions == null)
+					sat = Boolean.valueOf(solver().solve());
+				else
+					sat = Boolean.valueOf(solver().solve(candidateAssumptions));
+				counters.add(MinStatistics.Phase.CANDIDATE_SEARCH, start);
+		
+				//	logger.debug(sat+" "+allUnits.size());
+				
+				minimal = true;
+				if(sat) {	
+					final long startMinimize = System.nanoTime();
+					try {
+						minimize();
+					}
+					catch(ContradictionException e)
+					{
+						logger.info("CONTRADICTION exception in minimize() call");
+					}
+					counters.add(MinStatistics.Phase.MINIMIZATION, startMinimize);
+				}		
+				
+				if(event != null && event.shouldCommit())
+					event.commit(modelsFound, translation.numPrimaryVariables(), solver().numberOfClauses(), 
+							sat, minimal);
+				return sat;
+			} catch (org.sat4j.specs.TimeoutException e) {
+				throw new BudgetExhaustedException("SAT call expired");
+			}
+		}
+
+		/**
+		 * Minimizes the model in the SAT solver. If the budget of the call or the 
+		 * minimization's SAT calls runs out first, leaves the smallest model found in the
+		 * solver and clears this.minimal.
+		 * @throws TimeoutException
+		 * @throws ContradictionException
+		 * @throws NotMinimalModelException 
 		 */
 		private void minimize() throws TimeoutException, ContradictionException
 		{
@@ -1171,78 +1905,268 @@ public final class MinSolver {
 			int[] modelAfterMinimization = null;			
 			// Assumption: Have already found a model at this point!							
 			
-			// This keeps constraints to be removed from the solver
-			// after finding the next model.
-			Set<IConstr> constraints = new HashSet<IConstr>();
+			// The (non-unit) constraints to be removed from the solver after finding the next model.
+			temporaryConstraints.clear();
 			
 			// All the unit clauses being passed to the solver as assumptions.
-			Set<Integer> unitClauses = toSet(augments);						
-			
-			// Add all coneRestrictionUnits
-			for(Integer value: coneRestrictionUnits)
-				unitClauses.add(value);
+			assumptions.clear();
+			assumptions.pushAll(augments);
 			
-			MinSATSolver theSolver = ((MinSATSolver)translation.cnf());						
+			MinSATSolver theSolver = solver();						
 			//if(logDifference)		
 				modelBeforeMinimization = theSolver.getLastModel().clone();
 			
 			theSolver.deactivateSBP();
 			
+			int numPrimaryVariables = translation.numPrimaryVariables();
+			// facts: the primary variables already assumed false.
+			IntBitSet negated = facts(numPrimaryVariables);
+			
+			// Every model met on the way down lies above the minimal model, so it witnesses
+			// some of its consistent facts.
+			WitnessLog witnesses = witnesses(numPrimaryVariables);
+			witnesses.add(modelBeforeMinimization);
+			
+			// One SAT call has already been made to find the candidate.
 			int iterationCounter = 1;						
+			final int satCallBudget = extraOptions.minimizationSatCallBudget();
 			
-			do
+			try
 			{
-				// Given that candidate for minimal-model, try to make something smaller.
-				// add: disjunction of negations of all positive literals in M (constraint)
-				// add: all negative literals as unit clauses
-				
-				// An array of the next constraint being added.
-				List<Integer> loseSomethingPositive = new ArrayList<Integer>();
-				
-				int numPrimaryVariables = translation.numPrimaryVariables();
-					
-				for(int i = 1; i <= numPrimaryVariables; i++){
-					if(theSolver.valueOf(i) == true)
-						loseSomethingPositive.add(-i);
-					else // don't set anything curr. negative to positive.
-						unitClauses.add(-i);
-				}
-				
-				if(loseSomethingPositive.size() == 0)
+				if(extraOptions.coreGuidedMinimization())
 				{
-					// We have minimized down to the empty model. 
-					// Avoid calling the final SAT (would be adding the empty clause)
-					break;
-				}
-				if(loseSomethingPositive.size() == 1)
-				{
-					// We have only one relational fact that can possibly be removed.
-					unitClauses.add(loseSomethingPositive.get(0));
+					iterationCounter += minimizeWithCores(theSolver, numPrimaryVariables, witnesses, satCallBudget);
 				}
 				else
 				{
-					constraints.add(theSolver.addConstraint(toIntCollection(loseSomethingPositive)));
+					do
+					{
+						// Given that candidate for minimal-model, try to make something smaller.
+						// add: disjunction of negations of all positive literals in M (constraint)
+						// add: all negative literals as unit clauses
+					
+						witnesses.add(theSolver.getLastModel());
+					
+						// The next constraint being added.
+						IntStack loseSomethingPositive = clause;
+						loseSomethingPositive.clear();
+					
+						for(int i = 1; i <= numPrimaryVariables; i++){
+							if(theSolver.valueOf(i) == true)
+								loseSomethingPositive.push(-i);
+							else if(negated.add(i)) // don't set anything curr. negative to positive.
+								assumptions.push(-i);
+						}
+					
+						if(loseSomethingPositive.size() == 0)
+						{
+							// We have minimized down to the empty model. 
+							// Avoid calling the final SAT (would be adding the empty clause)
+							break;
+						}
+						if(loseSomethingPositive.size() == 1)
+						{
+							// We have only one relational fact that can possibly be removed.
+							assumptions.push(loseSomethingPositive.get(0));
+							negated.add(-loseSomethingPositive.get(0));
+						}
+						else
+						{
+							temporaryConstraints.add(theSolver.addConstraint(loseSomethingPositive));
+						}
+					
+						if(satCallBudget > 0 && iterationCounter > satCallBudget)
+						{
+							// Out of SAT calls: the model in the solver is the smallest found.
+							minimal = false;
+							break;
+						}
+						iterationCounter++;
+					}
+					while(minimizationRound(theSolver, iterationCounter - 1, clause.size()));
 				}
+			}
+			catch(BudgetExhaustedException e)
+			{
+				// The last model found is still in the solver (an expired call leaves it alone).
+				minimal = false;
+				logger.info("Out of budget while minimizing: "+e.getMessage());
+			}
+			finally
+			{
+				if(!isAugmented()) //if the iterator is NOT an augmentation, activate SBP.
+					theSolver.activateSBP();
 				
-				iterationCounter++;
+				// Remove all the (non-unit) loseSomethingPositive constraints we just added from the solver:
+				for(int ii = 0; ii < temporaryConstraints.size(); ii++)
+					theSolver.removeConstraint(temporaryConstraints.get(ii));		
+				temporaryConstraints.clear();
 			}
-			while(Boolean.valueOf(theSolver.solve(toIntCollection(unitClauses))));
 
 			if(logDifference){
 				modelAfterMinimization = theSolver.getLastModel().clone();
 				computeDifference(modelBeforeMinimization, modelAfterMinimization);
 			}
 			
-			((MinReporterToGatherSkolemBounds)options.reporter()).setIterations(iterationCounter);
-						
-			if(!isAugmented()) //if the iterator is NOT an augmentation, activate SBP.
-				theSolver.activateSBP();
+			reporter.setIterations(iterationCounter);
+		}
+		
+		/**
+		 * Makes the SAT call of the given round of minimization, under this.assumptions,
+		 * which tries to drop the given number of facts.
+		 * @return true if there is a smaller model
+		 */
+		private boolean minimizationRound(MinSATSolver theSolver, int round, int factsToDrop)
+		{
+			final FlightEvents.MinimizationRound event = FlightEvents.minimizationRound();
+			if(event != null)
+				event.begin();
+			final boolean sat = theSolver.solve(assumptions);
+			if(event != null && event.shouldCommit())
+				event.commit(modelsFound, round, translation.numPrimaryVariables(), theSolver.numberOfClauses(), 
+						factsToDrop, assumptions.size(), sat);
+			return sat;
+		}
+		
+		/**
+		 * Returns this iterator's bitset over the primary variables, emptied.
+		 */
+		private IntBitSet facts(int numPrimaryVariables)
+		{
+			if(facts == null || facts.capacity() <= numPrimaryVariables)
+				facts = new IntBitSet(numPrimaryVariables + 1);
+			else
+				facts.clear();
+			return facts;
+		}
+
+		/**
+		 * Core-guided minimization of the model in the SAT solver. Instead of asking for 
+		 * <i>some</i> smaller model each round, this asks for a model that drops a whole block 
+		 * of the current positive facts, passed as negative assumptions. If the call succeeds, 
+		 * the entire block is gone in one call. If it fails, SAT4J's failed-assumption explanation 
+		 * says which facts of the block took part in the conflict: if there is only one, it is 
+		 * true in every model below the current one, so it is assumed from then on. Otherwise 
+		 * the block is narrowed to (half of) the facts in the core.
+		 * 
+		 * Terminates when every positive fact of the model in the solver has been proven necessary.
+		 * 
+		 * On entry, this.assumptions holds the assumptions that every model must respect
+		 * (the augments) and this.facts is empty.
+		 * 
+		 * @param theSolver the solver, holding a model and with SBP deactivated.
+		 * @param numPrimaryVariables the number of primary variables.
+		 * @param witnesses the log every model found is added to.
+		 * @param satCallBudget the number of SAT calls that may be made (0 = no limit); if 
+		 * they run out first, this.minimal is cleared.
+		 * @return the number of SAT calls made.
+		 * @throws TimeoutException
+		 */
+		private int minimizeWithCores(MinSATSolver theSolver, int numPrimaryVariables, WitnessLog witnesses, int satCallBudget) throws TimeoutException
+		{
+			int satCalls = 0;
+			
+			// The assumptions are the literals that hold in every model below the current one 
+			// (fixed), followed by the negations of the current block.
+			// unknown: positive facts not yet removed or proven necessary.
+			// facts: the block, while its call is made; then the core's facts in it.
+			IntStack unknown = pending;
+			unknown.clear();
+			IntBitSet inBlock = facts;
 			
-			// Remove all the (non-unit) loseSomethingPositive constraints we just added from the solver:
-			Iterator<IConstr> it = constraints.iterator();
-			while(it.hasNext()){
-				theSolver.removeConstraint(it.next());		
+			for(int i = 1; i <= numPrimaryVariables; i++){
+				if(theSolver.valueOf(i))
+					unknown.push(i);
+				else // don't set anything curr. negative to positive.
+					assumptions.push(-i);
 			}
+			
+			int blockSize = unknown.size();
+			
+			while(!unknown.isEmpty())
+			{
+				if(satCallBudget > 0 && satCalls >= satCallBudget)
+				{
+					minimal = false;
+					break;
+				}
+				
+				final int fixed = assumptions.size();
+				final int block = Math.min(blockSize, unknown.size());
+				inBlock.clear();
+				for(int ii = 0; ii < block; ii++)
+				{
+					inBlock.add(unknown.get(ii));
+					assumptions.push(-unknown.get(ii));
+				}
+				
+				satCalls++;
+				boolean sat = minimizationRound(theSolver, satCalls, block);
+				assumptions.truncate(fixed);
+				
+				if(sat)
+				{
+					witnesses.add(theSolver.getLastModel());
+					
+					// The whole block (and maybe more) is gone. Necessary facts are still true,
+					// since they were assumed.
+					int stillTrue = 0;
+					for(int ii = 0; ii < unknown.size(); ii++)
+					{
+						int fact = unknown.get(ii);
+						if(theSolver.valueOf(fact))
+							unknown.set(stillTrue++, fact);
+						else
+							assumptions.push(-fact);
+					}
+					unknown.truncate(stillTrue);
+					blockSize = Math.min(blockSize * 2, Math.max(1, unknown.size()));
+				}
+				else
+				{
+					// Keep the block's facts that are in the core.
+					IntStack inCore = scratch;
+					inCore.clear();
+					for(int lit : theSolver.failedAssumptions())
+					{
+						if(lit < 0 && inBlock.remove(-lit))
+							inCore.push(-lit);
+					}
+					
+					if(inCore.size() == 1 || (inCore.isEmpty() && block == 1))
+					{
+						// This fact cannot be dropped from any model below the current one.
+						int necessary = inCore.isEmpty() ? unknown.get(0) : inCore.get(0);
+						assumptions.push(necessary);
+						unknown.remove(necessary);
+						blockSize = Math.min(blockSize * 2, Math.max(1, unknown.size()));
+					}
+					else if(inCore.isEmpty())
+					{
+						// No usable explanation; fall back to testing one fact at a time.
+						blockSize = 1;
+					}
+					else
+					{
+						// Not all of the core's facts can go together. Move them to the front 
+						// and try to drop half of them. (The block's facts still in inBlock 
+						// are those outside the core.)
+						final int coreSize = inCore.size();
+						for(int ii = 0; ii < unknown.size(); ii++)
+						{
+							int fact = unknown.get(ii);
+							if(ii >= block || inBlock.contains(fact))
+								inCore.push(fact);
+						}
+						unknown.clear();
+						for(int ii = 0; ii < inCore.size(); ii++)
+							unknown.push(inCore.get(ii));
+						blockSize = Math.max(1, coreSize / 2);
+					}
+				}
+			}
+			
+			return satCalls;
 		}
 
 		/**
@@ -1256,25 +2180,32 @@ public final class MinSolver {
 			int reducedAttributes = 0;
 			int reducedRelations = 0;
 			
-			MinReporterToGatherSkolemBounds reporter = (MinReporterToGatherSkolemBounds)options.reporter();
-			
 			Set<Object> atomsBeforeMinimization = new LinkedHashSet<Object>();
 			Set<Object> atomsAfterMinimization = new LinkedHashSet<Object>();
 			
+			PrimaryVariableIndex index = translation.primaryIndex();
+			TupleFactory factory = getSkolemBounds().universe().factory();
+			
 			//Computing the difference set:
 			for(int i = 0; i < translation.numPrimaryVariables(); i++){
+				boolean before = modelBeforeMinimization[i] > 0;
+				boolean after = modelAfterMinimization[i] > 0;
+				if(!before && !after)
+					continue;
+				
 				//getting the translation for this proposition: 
-				Entry<Relation, TupleSet> trans = MinTwoWayTranslator.translateProposition(translation, reporter.skolemBounds, mapVarToRelation, i+1);
+				Relation r = index.relation(i+1);
+				Tuple tuple = factory.tuple(r.arity(), index.tupleIndex(i+1));
 
-				if(modelBeforeMinimization[i] > 0) //a fact is true before minimization, so store its atoms in the first set.
-					atomsBeforeMinimization.addAll(getAtoms(trans.getValue()));
+				if(before) //a fact is true before minimization, so store its atoms in the first set.
+					addAtoms(tuple, atomsBeforeMinimization);
 				
-				if(modelAfterMinimization[i] > 0) //a fact is true after minimization, so store its atoms in the second set.
-					atomsAfterMinimization.addAll(getAtoms(trans.getValue()));
+				if(after) //a fact is true after minimization, so store its atoms in the second set.
+					addAtoms(tuple, atomsAfterMinimization);
 				
-				if(modelBeforeMinimization[i] > 0 && modelAfterMinimization[i] < 0){ //if a fact is true before minimization but not after 
-					if(trans.getKey().arity() == 1) reducedAttributes++; //The corresponding relation is unary.
-					else if(trans.getKey().arity() > 1) reducedRelations++; //The corresponding relation is binary or higher.					
+				if(before && !after){ //if a fact is true before minimization but not after 
+					if(r.arity() == 1) reducedAttributes++; //The corresponding relation is unary.
+					else if(r.arity() > 1) reducedRelations++; //The corresponding relation is binary or higher.					
 				}
 			}
 			
@@ -1287,103 +2218,182 @@ public final class MinSolver {
 		}
 		
 		/**
-		 * Computes all the CFs for the current model loaded in the solver.
+		 * Computes all the CFs for the current model loaded in the solver. The result is
+		 * kept until the iterator moves on, so asking again for the same model is free.
+		 * If the budget runs out first, returns the CFs found until then (and does not keep 
+		 * them); consistentFactsComplete() tells which.
 		 * @return
 		 * @throws TimeoutException
 		 * @throws ContradictionException
 		 */
-		public int[] getConsistentFacts() throws TimeoutException, ContradictionException
+		public synchronized int[] getConsistentFacts() throws TimeoutException, ContradictionException
 		{			
 			assert(!trivial);
 			
-			MinSATSolver solver = (MinSATSolver)translation.cnf();								
-			Set<Integer> wantToAdd = new HashSet<Integer>();
-			Set<Integer> retVal = new HashSet<Integer>();
-			Set<Integer> preservedFacts = new HashSet<Integer>();						
-						
-			//TODO claimSATSolver does not have to fill all the clauses in here.
-			claimSATSolver();
-			removeAllConstraints();								
-			
-			
-			// Always deactivate SBP before searching for augmentations
-			solver.deactivateSBP();			
-			
-			// preservedFacts are the positive literals that define the "cone" we are in.
-			// wantToAdd are the negative (turned positive) literals we want to check for in the cone.
-
-			int numPrimaryVariables = translation.numPrimaryVariables();
-			
 			// Do not reference lastSolution here. lastSolution will hold an unsatisfiable
 			// Solution result if the iterator is empty. Instead, keep the last instance found:					
 			int[] lastPropositionalModelReturned = lastSatSolutionFound.getPropositionalModel();
-			
+			if(consistentFacts == null || consistentFactsModel != lastPropositionalModelReturned)
+			{
+				int[] found = minSolver.speculatedConsistentFacts(this, lastPropositionalModelReturned);
+				consistentFactsComplete = true;
+				if(found == null)
+				{
+					final FlightEvents.ConsistentFacts event = FlightEvents.consistentFacts();
+					if(event != null)
+						event.begin();
+					final SolveBudget budget = startBudget();
+					final long start = System.nanoTime();
+					try {
+						synchronized(solver()) {
+							found = computeConsistentFacts(lastPropositionalModelReturned);
+						}
+					} finally {
+						endBudget(budget);
+					}
+					final MinMetrics metrics = MinMetrics.current();
+					if(metrics != null)
+						metrics.consistentFactsComputed(System.nanoTime() - start);
+					if(event != null && event.shouldCommit())
+						event.commit(modelsFound, translation.numPrimaryVariables(), solver().numberOfClauses(), 
+								found.length, consistentFactsComplete);
+					if(!consistentFactsComplete)
+						return found;
+				}
+				consistentFacts = found;
+				consistentFactsModel = lastPropositionalModelReturned;
+			}
+			consistentFactsComplete = true;
+			return consistentFacts.clone();
+		}
+		
+		/**
+		 * Computes the CFs of the given model: marks those the witness log already 
+		 * has models for (the minimization that produced the model logged every model
+		 * it passed), then searches for the rest, logging every model it finds. Clears
+		 * consistentFactsComplete if the budget runs out during the search.
+		 */
+		private int[] computeConsistentFacts(int[] lastPropositionalModelReturned) throws TimeoutException, ContradictionException
+		{
+			// The assumptions are the positive literals that define the "cone" we are in.
+			// wantToAdd are the negative (turned positive) literals we want to check for in the cone.
+			// found are the consistent facts found so far.
+
+			int numPrimaryVariables = translation.numPrimaryVariables();
+			IntStack unitClauses = assumptions;
+			IntStack wantToAdd = pending;
+			IntBitSet found = facts(numPrimaryVariables);
+			unitClauses.clear();
+			wantToAdd.clear();
 			
 			for(int i = 1; i <= numPrimaryVariables; i++){
 				if(lastPropositionalModelReturned[i - 1] > 0)
-					preservedFacts.add(i);
-				else
-					wantToAdd.add(i);
+					unitClauses.push(i);
+			}
+			
+			// Models logged by earlier searches that lie above this one witness some facts already.
+			WitnessLog witnesses = witnesses(numPrimaryVariables);
+			witnesses.markWitnessed(unitClauses, found);
+			for(int i = 1; i <= numPrimaryVariables; i++){
+				if(lastPropositionalModelReturned[i - 1] <= 0 && !found.contains(i))
+					wantToAdd.push(i);
 			}					
 			
+			if(wantToAdd.isEmpty())
+				return found.toArray();
+			
+			// With several workers, leave this iterator's solver alone and split the 
+			// candidates across replicas of the translation's (unless there are too few, or the
+			// translation was made before the option was set, so it cannot be replicated).
+			final int workers = extraOptions.consistentFactsWorkers();
+			if(workers > 1 && wantToAdd.size() >= 2 * workers && translation.cnf().replicable()) {
+				// The replicas are the translation's, so iterators with solvers of their own take turns on them too.
+				synchronized(translation.replicasLock()) {
+					final MinSATSolver[] replicas = translation.replicas(workers);
+					for(MinSATSolver replica : replicas)
+						budget.attach(replica);
+					try {
+						ParallelConsistentFacts.compute(replicas, minSolver.consistentFactsPool(), 
+								unitClauses, wantToAdd, numPrimaryVariables, found);
+					} catch(BudgetExhaustedException e) {
+						consistentFactsComplete = false;
+						logger.info("Out of budget while computing consistent facts: "+e.getMessage());
+					}
+				}
+				return found.toArray();
+			}
+			
+			MinSATSolver solver = solver();								
+						
+			// Cone restrictions (of any iterator) do not apply to consistent facts.
+			claimSATSolver();
+			solver.setActiveScope(0);
+			
+			
+			// Always deactivate SBP before searching for augmentations
+			solver.deactivateSBP();			
+			
 			boolean wasSatisfiable = false;
-			List<Integer> unitClauses = new ArrayList<Integer>(preservedFacts);
-								
-			//JOptionPane.showMessageDialog(null, wantToAdd+"\n"+preservedFacts);
 			
-			// Loop while (a) there are facts left to find and (b) still satisfiable.
-			do
+			try
 			{
-				// Add a disjunction for the current set of literals we want to find:
-				IConstr removeWTA = null;
-				//System.out.println("Adding WTA: "+wantToAdd);
-				if(wantToAdd.size() > 1)
-				{
-					removeWTA = solver.addConstraint(toIntCollection(wantToAdd));
-				}
-				else
-				{
-					for(Integer onlyOne : wantToAdd)
-						unitClauses.add(onlyOne);
-				}
-				
-				wasSatisfiable = solver.solve(toIntCollection(unitClauses));		
-				
-				//JOptionPane.showMessageDialog(null, "sat="+wasSatisfiable+"; unitClauses="+unitClauses);
-
-				
-				if(wasSatisfiable)
+				// Loop while (a) there are facts left to find and (b) still satisfiable.
+				while(wantToAdd.size() > 0)
 				{
+					// Add a disjunction for the current set of literals we want to find:
+					IConstr removeWTA = null;
+					if(wantToAdd.size() > 1)
+					{
+						removeWTA = solver.addConstraint(wantToAdd);
+					}
+					else
+					{
+						unitClauses.push(wantToAdd.get(0));
+					}
 					
-					//System.out.println("Model found was: "+Arrays.toString(tempModel));
-					Set<Integer> foundAugments = new HashSet<Integer>(); // avoid concurrentmodificationexception
-					for(Integer toAdd : wantToAdd)
+					try {
+						wasSatisfiable = solver.solve(unitClauses);
+					} finally {
+						// Remove the targets for this iteration (needed to keep the shared solver clean)
+						if(removeWTA != null)
+							solver.removeConstraint(removeWTA);
+					}
+					
+					if(wasSatisfiable)
 					{
-						// The -1 is because the model is an array (start = 0) 
-						// yet our variables start=1
-						if(solver.valueOf(toAdd))
+						witnesses.add(solver.getLastModel());
+						
+						// Keep looking for the facts that are still false.
+						int stillWanted = 0;
+						for(int ii = 0; ii < wantToAdd.size(); ii++)
 						{
-							foundAugments.add(toAdd);
-							retVal.add(toAdd);
+							int toAdd = wantToAdd.get(ii);
+							if(solver.valueOf(toAdd))
+								found.add(toAdd);
+							else
+								wantToAdd.set(stillWanted++, toAdd);
 						}
-					}
-
-					wantToAdd.removeAll(foundAugments);
-				}	
-				
-				// Remove the targets for this iteration (needed to keep the shared solver clean)
-				if(removeWTA != null)
-					solver.removeConstraint(removeWTA);
-				
+						wantToAdd.truncate(stillWanted);
+					}	
+					
+					if(!wasSatisfiable)
+						break;
+				}
+			}
+			catch(BudgetExhaustedException e)
+			{
+				consistentFactsComplete = false;
+				logger.info("Out of budget while computing consistent facts: "+e.getMessage());
+			}
+			finally
+			{
+				// If this is an un-augmented iterator, re-activate symmetry-breaking
+				// (Or else the next models would not benefit from SB.)
+				if(!isAugmented())
+					solver.activateSBP();
 			}
-			while(wantToAdd.size() > 0 && wasSatisfiable);
-			
-			// If this is an un-augmented iterator, re-activate symmetry-breaking
-			// (Or else the next models would not benefit from SB.)
-			if(!isAugmented())
-				solver.activateSBP();												
 			
-			return toIntCollection(retVal);
+			return found.toArray();
 		}
 		
 		/**
@@ -1394,11 +2404,20 @@ public final class MinSolver {
 			return translation;
 		}
 		
+		/**
+		 * Returns the bounds after skolemization of this iterator's spec, or null if it 
+		 * has not been translated yet.
+		 * @return the skolem bounds.
+		 */
+		public Bounds getSkolemBounds(){
+			return (inheritedSkolemBounds != null) ? inheritedSkolemBounds : reporter.skolemBounds;
+		}
+		
 		/**
 		 * Returns the last solution of the iterator.
 		 * @return the last solution.
 		 */
-		private MinSolution getLastSolution(){
+		MinSolution getLastSolution(){
 			return lastSolution;
 		}
 		
@@ -1410,44 +2429,32 @@ public final class MinSolver {
 			if(last != null)
 				this.lastSolution = last;
 			
-			if(last.instance() != null)
+			if(last.sat())
 			{
 				this.lastSatSolutionFound = last;
+				this.consistentFacts = null;
+				this.consistentFactsModel = null;
 			}			
 		}
 		
 		/**
-		 * Returns true if the iterator is an augmentation and returns false otherwise.
-		 */
-		private boolean isAugmented(){
-			return augments != null && augments.length > 0;
-		}
-		
-		//Helpers:
-		/**
-		 * Considers all the constraints.
-		 * @throws ContradictionException
+		 * Returns the witness log, making it on first use.
 		 */
-		private void addAllClauses() throws ContradictionException
+		private WitnessLog witnesses(int numPrimaryVariables)
 		{
-			for(Set<Integer> aClause: coneRestrictionClauses)
-			{
-				coneRestrictionConstraints.add(((MinSATSolver)translation.cnf()).addConstraint(toIntCollection(aClause)));					
-			}
+			if(witnesses == null)
+				witnesses = new WitnessLog(numPrimaryVariables, WitnessLog.DEFAULT_CAPACITY);
+			return witnesses;
 		}
 		
 		/**
-		 * Removes all the cone restriction constraints of this iterator.
+		 * Returns true if the iterator is an augmentation and returns false otherwise.
 		 */
-		private void removeAllConstraints(){
-			Iterator<IConstr> it = coneRestrictionConstraints.iterator();
-			while(it.hasNext()){
-				IConstr temp = it.next();
-				translation.cnf().removeConstraint(temp);
-				it.remove();
-			}
-		}		
+		private boolean isAugmented(){
+			return augments != null && augments.length > 0;
+		}
 		
+		//Helpers:
 		private static int[] toIntCollection(Collection<Integer> integers)
 		{
 		    int[] ret = new int[integers.size()];
@@ -1477,18 +2484,12 @@ public final class MinSolver {
 		}
 		
 		/**
-		 * Returns all the atoms in a TupleSet
-		 * @param tuples the input TupleSet
-		 * @return a set of atoms
+		 * Adds all the atoms of a Tuple to a set
+		 * @param tuple the input Tuple
+		 * @param atoms the set of atoms to add to
 		 */
-		private static Set<Object> getAtoms(TupleSet tuples){
-			Set<Object> atoms = new HashSet<Object>();
-			
-			for(Tuple tuple: tuples){
-				for(int i = 0; i < tuple.arity(); i++) { atoms.add(tuple.atom(i)); }
-			}
-			
-			return atoms;
+		private static void addAtoms(Tuple tuple, Set<Object> atoms){
+			for(int i = 0; i < tuple.arity(); i++) { atoms.add(tuple.atom(i)); }
 		}
 	}
 	
@@ -1499,58 +2500,30 @@ public final class MinSolver {
 	 *
 	 */
 	public static class MinTwoWayTranslator{
-		private static Map<Integer, Relation> buildVarToRelationMap(
-				MinTranslation translation, Bounds aBounds){
-			Map<Integer, Relation> mapVarToRelation = new HashMap<Integer, Relation>(); 
-			for(Relation r : aBounds.relations())
-			{
-				IntSet varsForThisRelation = translation.primaryVariables(r);
-				
-				//if there is no primary variable for this relation, continue:
-				if(varsForThisRelation == null)
-					continue;
-				
-				IntIterator itVarsForThis = varsForThisRelation.iterator();
-				while(itVarsForThis.hasNext())
-				{
-					mapVarToRelation.put(itVarsForThis.next(), r);
-				}
-					
-			}
-			
-			return mapVarToRelation;
-		}
-		
 		/**
 		 * Used for debugging purposes. Print the bijection between propositional
 		 * variables and relational facts as a string.
 		 * @param translation
 		 * @param aBounds
-		 * @param mapVarToRelation
 		 * @return
 		 */
 		@SuppressWarnings("unused")
-		private static String printTranslation(MinTranslation translation, Bounds aBounds,
-				Map<Integer, Relation> mapVarToRelation)
+		private static String printTranslation(MinTranslation translation, Bounds aBounds)
 		{
-			String outs="";
+			StringBuilder outs = new StringBuilder();
+			PrimaryVariableIndex index = translation.primaryIndex();
 			
-			// Now that we have the mapping from var --> its relation, we can find the tuple:		
 			for(int theVar = 1; theVar <= translation.numPrimaryVariables(); theVar++)
 			{					
-				Relation myRelation = mapVarToRelation.get(theVar);
-				
-				IntSet s = translation.primaryVariables(myRelation);
-				
-				Tuple myTuple = getTupleForPropVariable(
-							aBounds, translation, s, myRelation, theVar);
+				Relation myRelation = index.relation(theVar);
+				Tuple myTuple = getTupleForPropVariable(aBounds, translation, theVar);
 									
-				outs += (theVar+": "+myTuple+" "+myRelation+" | ");
+				outs.append(theVar).append(": ").append(myTuple).append(" ").append(myRelation).append(" | ");
 				if(theVar % 4 == 0)
-					outs += "\n";
+					outs.append("\n");
 			}
 			
-			return outs;				
+			return outs.toString();				
 		}
 
 		
@@ -1558,112 +2531,54 @@ public final class MinSolver {
 		 * Converts a set of primary propositional variables into set of relational expressions.
 		 * @param translation the translation.
 		 * @param aBounds the bounds.
-		 * @param mapVarToRelation a map that maps the propositional variables to the relations that they appear in.
 		 * @param theVars a VectInt of the variables to convert.
 		 * @return
 		 */
-		private static Instance translatePropositions(MinTranslation translation, Bounds aBounds,
-				Map<Integer, Relation> mapVarToRelation, int[] theVars)
+		private static Instance translatePropositions(MinTranslation translation, Bounds aBounds, int[] theVars)
 		{
-			// Populate an empty instance over the universe we're using:
-			Instance result = new Instance(aBounds.universe());
-
+			PrimaryVariableIndex index = translation.primaryIndex();
+			TupleFactory factory = aBounds.universe().factory();
+			
+			// Instance.add overwrites what is already in the relation, so gather each relation's tuples first.
+			Map<Relation, TupleSet> contents = new LinkedHashMap<Relation, TupleSet>();
 			for(int i = 0; i < theVars.length; i++)
 			{	
-				Entry<Relation, TupleSet> entry = translateProposition(translation, aBounds, mapVarToRelation, theVars[i]);
-				Relation myRelation = entry.getKey();
-				TupleSet theContents = entry.getValue();
-				
-				TupleSet currentContents = result.tuples(myRelation);
-				if(currentContents != null) // returns null instead of empty set!!
-					theContents.addAll(currentContents); 				
-
-				result.add(myRelation, theContents);
+				Relation myRelation = index.relation(theVars[i]);
+				TupleSet theContents = contents.get(myRelation);
+				if(theContents == null)
+				{
+					theContents = factory.noneOf(myRelation.arity());
+					contents.put(myRelation, theContents);
+				}
+				theContents.add(factory.tuple(myRelation.arity(), index.tupleIndex(theVars[i])));
 			}
 			
+			// Populate an empty instance over the universe we're using:
+			Instance result = new Instance(aBounds.universe());
+			for(Entry<Relation, TupleSet> entry : contents.entrySet())
+				result.add(entry.getKey(), entry.getValue());
+			
 			// Set<RelationalFact> would be better than Instance. But for now use Instance
 			
 			// Return an instance (should not be interpreted as a model of the qry!!) that contains
 			// only those relational facts indicated by theVars
 			return result;				
 		}
-
-		/**
-		 * Converts a single primary propositional variable to a relational expression.
-		 * @param translation the translation.
-		 * @param bounds the bounds.
-		 * @param mapVarToRelation a map that maps the propositional variables to the relations that they appear in.
-		 * @param vars a propositional variable to convert.
-		 * @return a Map.Entry object mapping a Relation to a TupleSet.
-		 */
-		private static Entry<Relation, TupleSet> translateProposition(MinTranslation translation, Bounds bounds, 
-				Map<Integer, Relation> mapVarToRelation, final int var){
-			Relation myRelation = mapVarToRelation.get(var);
-
-			IntSet s = translation.primaryVariables(myRelation);
-			
-			Tuple myTuple = getTupleForPropVariable(
-						bounds, translation, s, myRelation, var);
-				
-			// .add here is actually .set -- it overwrites what is already in the relation.
-			// So we CANNOT just do:			
-			//result.add(myRelation, bounds.universe().factory().setOf(myTuple));
-			TupleSet theContents = bounds.universe().factory().setOf(myTuple);
-			
-			return new SimpleEntry<Relation, TupleSet>(myRelation, theContents);
-		}
 		
-		private static Tuple getTupleForPropVariable(Bounds aBounds, MinTranslation theTranslation, IntSet s, Relation r, int theVar)
-		//throws MInternalNoBoundsException
+		private static Tuple getTupleForPropVariable(Bounds aBounds, MinTranslation theTranslation, int theVar)
 		{
-			// The relation's upper bound has a list of tuple indices. The "index" variable below is an index
-			// into that list of indices. (If our upper bound was _everything_, would be no need to de-reference.)
-	        int minVarForR = s.min();
-			
-			// Compute index: (variable - minvariable) of this relation's variables 
-	        int index = theVar - minVarForR;
-	        
-	        // OPT: How slow is this? May want to cache...
-	        int[] arr = aBounds.upperBound(r).indexView().toArray();
-	        
-	        TupleFactory factory = aBounds.universe().factory();   
-	        Tuple tup = factory.tuple(r.arity(), arr[index]);  
-
-	        //MCommunicator.writeToLog("\ngetTupleForPropVariable: thisTuple="+tup+" for "+theVar+". Relation had vars: "+s+" and the offset was "+minVarForR+
-	        //		"leaving index="+index+". Upper bound indexview: "+Arrays.toString(arr)+
-	        //		"\nThe de-referenced tuple index is: "+arr[index]);
-
-	        return tup;
+			PrimaryVariableIndex index = theTranslation.primaryIndex();
+			Relation r = index.relation(theVar);
+	        return aBounds.universe().factory().tuple(r.arity(), index.tupleIndex(theVar));
 		}
 		
-		private static int getPropVariableForTuple(Bounds aBounds, MinTranslation translation, Relation r, Tuple tuple){
-			IntSet s = translation.primaryVariables(r);
-
-			//if there is no primary variable for this relation, return -1
-			if(s == null)
-				return -1;
-			
-			TupleSet upperBound = aBounds.upperBound(r);
-			
-			if(upperBound == null)
+		private static int getPropVariableForTuple(MinTranslation translation, Relation r, Tuple tuple){
+			//if the tuple cannot belong to r, there is no primary variable for it
+			if(tuple.arity() != r.arity())
 				return -1;
 			
-			int[] arr = upperBound.indexView().toArray();
-
-			
-	        TupleFactory factory = aBounds.universe().factory();
-	        
-	        int index = -1;
-	        //Not the best way of doing this!
-	        for(int i = 0; i < arr.length; i++){
-	        	if(tuple.equals(factory.tuple(r.arity(), arr[i])))
-	        		index = i;
-	        }
-	        
-	        if(index == -1)
-	        	return -1;
-	        
-			return s.min() + index;//s.min() + tuple.index();
+			// -1 if there is no primary variable for this relation or this tuple
+			return translation.primaryIndex().variable(r, tuple.index());
 		}
 	}
 	
@@ -36,8 +36,43 @@ public final class MinStatistics {
 	
 	private static final String NEW_LINE = System.getProperty("line.separator");
 	
+	private static final long[] NONE = new long[Phase.values().length];
+	
 	private final int vars, pVars, clauses;
 	private final long translation, solving; 
+	/* indexed by Phase.ordinal() */
+	private final long[] phaseNanos, phaseCounts;
+	private final long satCalls, assumptions, conflicts, propagations, clausesAdded, clausesRemoved;
+	
+	/**
+	 * The phases of finding a model whose time is recorded. The first six are the
+	 * phases of translation, done once per spec; the others are the phases of solving,
+	 * recorded for each model.
+	 */
+	public static enum Phase {
+		/** Skolemizing the formula. */
+		SKOLEMIZATION,
+		/** Detecting the symmetries of the bounds. */
+		SYMMETRY_DETECTION,
+		/** Translating the formula to a Boolean circuit. */
+		TRANSLATION_TO_BOOLEAN,
+		/** Flattening the formula or the circuit, if enabled. */
+		FLATTENING,
+		/** Translating the circuit and the SBP to CNF. */
+		TRANSLATION_TO_CNF,
+		/** Breaking symmetries on predicates and generating the SBP circuit. */
+		SBP_GENERATION,
+		/** The SAT calls that find candidate models. */
+		CANDIDATE_SEARCH,
+		/** Minimizing the candidates (all rounds). */
+		MINIMIZATION,
+		/** Adding the cone restriction clause of each model. */
+		CONE_RESTRICTION,
+		/** Adding the cone restriction clauses of the permuted models. */
+		PERMUTED_CONE_RESTRICTION,
+		/** Checking models against the SBP. */
+		SBP_CHECK
+	}
 	
 	/**
 	 * Constructs a new Statistics object using the provided values.
@@ -49,14 +84,51 @@ public final class MinStatistics {
 		this.clauses = clauses;
 		this.translation = translationTime;
 		this.solving = solvingTime;
+		this.phaseNanos = NONE;
+		this.phaseCounts = NONE;
+		this.satCalls = this.assumptions = this.conflicts = this.propagations = 0;
+		this.clausesAdded = this.clausesRemoved = 0;
 	}
 	
 	/**
 	 * Constructs a new Statistics object using the provided values.
 	 */
 	MinStatistics(MinTranslation translation, long translationTime, long solvingTime) { 
-		this(translation.numPrimaryVariables(), translation.cnf().numberOfVariables(), 
-				translation.cnf().numberOfClauses(), translationTime, solvingTime);
+		this(translation, translationTime, solvingTime, null);
+	}
+	
+	/**
+	 * Constructs a new Statistics object using the provided values, with the time of
+	 * the translation phases taken from the translation and that of the solving phases,
+	 * and the solver's counters, from the given counters (if not null).
+	 */
+	MinStatistics(MinTranslation translation, long translationTime, long solvingTime, SolveCounters counters) { 
+		this.pVars = translation.numPrimaryVariables();
+		this.vars = translation.cnf().numberOfVariables();
+		this.clauses = translation.cnf().numberOfClauses();
+		this.translation = translationTime;
+		this.solving = solvingTime;
+		this.phaseNanos = new long[NONE.length];
+		this.phaseCounts = new long[NONE.length];
+		for(Phase phase : Phase.values()) {
+			phaseNanos[phase.ordinal()] = translation.phaseNanos(phase);
+			phaseCounts[phase.ordinal()] = translation.phaseCount(phase);
+		}
+		if(counters == null) {
+			this.satCalls = this.assumptions = this.conflicts = this.propagations = 0;
+			this.clausesAdded = this.clausesRemoved = 0;
+		} else {
+			for(int ii = 0; ii < NONE.length; ii++) {
+				phaseNanos[ii] += counters.nanos[ii];
+				phaseCounts[ii] += counters.counts[ii];
+			}
+			this.satCalls = counters.satCalls;
+			this.assumptions = counters.assumptions;
+			this.conflicts = counters.conflicts;
+			this.propagations = counters.propagations;
+			this.clausesAdded = counters.clausesAdded;
+			this.clausesRemoved = counters.clausesRemoved;
+		}
 	}
 	
 	/**
@@ -111,6 +183,84 @@ public final class MinStatistics {
 		return solving;
 	}
 	
+	/**
+	 * Returns the number of nanoseconds spent in the given phase: for a phase of 
+	 * translation, while translating this.formula; for a phase of solving, while
+	 * finding this model. 0 if the phase was not timed (e.g. the formula was trivial).
+	 * @return the number of nanoseconds spent in the given phase.
+	 */
+	public long phaseNanos(Phase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+	
+	/**
+	 * Returns the number of times the given phase was entered (see phaseNanos()).
+	 * @return the number of times the given phase was entered.
+	 */
+	public long phaseCount(Phase phase) {
+		return phaseCounts[phase.ordinal()];
+	}
+	
+	/**
+	 * Returns the number of SAT calls made while finding this model, to find
+	 * candidates and to minimize them.
+	 * @return the number of SAT calls made while finding this model.
+	 */
+	public long satCalls() {
+		return satCalls;
+	}
+	
+	/**
+	 * Returns the total number of assumptions passed to the SAT calls made while
+	 * finding this model, including the selectors of the SBP and of cone restrictions.
+	 * @return the total number of assumptions of the SAT calls.
+	 */
+	public long assumptions() {
+		return assumptions;
+	}
+	
+	/**
+	 * Returns the average number of assumptions per SAT call, or 0 if none was made.
+	 * @return assumptions() / satCalls()
+	 */
+	public double assumptionsPerCall() {
+		return (satCalls == 0) ? 0 : (double) assumptions / satCalls;
+	}
+	
+	/**
+	 * Returns the number of conflicts SAT4J met while finding this model.
+	 * @return the number of conflicts SAT4J met while finding this model.
+	 */
+	public long conflicts() {
+		return conflicts;
+	}
+	
+	/**
+	 * Returns the number of propagations SAT4J made while finding this model.
+	 * @return the number of propagations SAT4J made while finding this model.
+	 */
+	public long propagations() {
+		return propagations;
+	}
+	
+	/**
+	 * Returns the number of clauses added to the SAT solver while finding this model:
+	 * minimization constraints and cone restrictions.
+	 * @return the number of clauses added to the SAT solver while finding this model.
+	 */
+	public long clausesAdded() {
+		return clausesAdded;
+	}
+	
+	/**
+	 * Returns the number of clauses removed from the SAT solver while finding this 
+	 * model: minimization constraints and subsumed cone restrictions.
+	 * @return the number of clauses removed from the SAT solver while finding this model.
+	 */
+	public long clausesRemoved() {
+		return clausesRemoved;
+	}
+	
 	/**
 	 * Returns a string representation of this
 	 * Statistics object.
@@ -133,6 +283,21 @@ public final class MinStatistics {
 		ret.append("solving time: ");
 		ret.append(solving);
 		ret.append(" ms");
+		for(Phase phase : Phase.values()) {
+			if(phaseCounts[phase.ordinal()] == 0)
+				continue;
+			ret.append(NEW_LINE).append(phase.name().toLowerCase()).append(": ");
+			ret.append(phaseNanos[phase.ordinal()]).append(" ns (");
+			ret.append(phaseCounts[phase.ordinal()]).append("x)");
+		}
+		if(satCalls > 0) {
+			ret.append(NEW_LINE).append("sat calls: ").append(satCalls);
+			ret.append(", assumptions per call: ").append(String.format("%.1f", assumptionsPerCall()));
+			ret.append(NEW_LINE).append("conflicts: ").append(conflicts);
+			ret.append(", propagations: ").append(propagations);
+			ret.append(NEW_LINE).append("clauses added: ").append(clausesAdded);
+			ret.append(", removed: ").append(clausesRemoved);
+		}
 		return ret.toString();
 	}
 }
\ No newline at end of file
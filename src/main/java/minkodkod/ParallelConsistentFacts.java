@@ -0,0 +1,169 @@
+package minkodkod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import kodkod.util.ints.IntBitSet;
+
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IConstr;
+import org.sat4j.specs.TimeoutException;
+
+// ALUMINUM: New class. The parallel mode of MinSolutionIterator.getConsistentFacts().
+
+/**
+ * Computes the consistent facts of a model on several replicas of the translation's
+ * solver at once. The candidates (the model's false primary variables) are dealt out
+ * round-robin to the workers, one replica each. A worker runs the serial algorithm on
+ * its share: assume the model's true variables, add a clause asking for one of its
+ * candidates, and harvest the candidates the model found makes true. It harvests every
+ * worker's candidates, not just its own, and drops the ones others have found before
+ * each SAT call. A worker stops when its share is found or unsatisfiable.
+ *
+ * A candidate is a consistent fact iff some model extends the assumptions with it, and
+ * no worker stops while such a model is left for one of its candidates, so the facts
+ * found are exactly those of the serial algorithm.
+ */
+final class ParallelConsistentFacts {
+	private final MinSATSolver[] replicas;
+	private final int[] positives;
+	private final int[] candidates;
+	/* found.get(v) == 1 iff candidate v has been found by some worker */
+	private final AtomicIntegerArray found;
+
+	/**
+	 * @param replicas the solvers, one per worker, each holding the translation's clauses
+	 * with the SBP off and no other clauses
+	 * @param positives the true primary variables of the model
+	 * @param candidates the false primary variables of the model
+	 * @param numPrimaryVariables the number of primary variables
+	 */
+	private ParallelConsistentFacts(MinSATSolver[] replicas, IntStack positives, IntStack candidates, int numPrimaryVariables) {
+		this.replicas = replicas;
+		this.positives = positives.toArray();
+		this.candidates = candidates.toArray();
+		this.found = new AtomicIntegerArray(numPrimaryVariables + 1);
+	}
+
+	/**
+	 * Adds to result the consistent facts among candidates, for the model whose true
+	 * primary variables are positives. Worker 0 runs on the calling thread, the others
+	 * on the given pool (which may be null if there is only one replica). If a worker
+	 * fails (e.g., runs out of budget), still adds the facts found, then rethrows.
+	 */
+	static void compute(MinSATSolver[] replicas, ExecutorService pool, IntStack positives, IntStack candidates,
+			int numPrimaryVariables, IntBitSet result) throws TimeoutException, ContradictionException {
+		final ParallelConsistentFacts computation = new ParallelConsistentFacts(replicas, positives, candidates, numPrimaryVariables);
+
+		final List<Future<Void>> others = new ArrayList<Future<Void>>(replicas.length - 1);
+		for(int w = 1; w < replicas.length; w++) {
+			final int worker = w;
+			others.add(pool.submit(new Callable<Void>() {
+				public Void call() throws TimeoutException, ContradictionException {
+					computation.work(worker);
+					return null;
+				}
+			}));
+		}
+
+		try {
+			computation.work(0);
+		} finally {
+			// The replicas must be left clean, so every worker is waited for.
+			Throwable failure = null;
+			for(Future<Void> other : others) {
+				final Throwable thrown = await(other);
+				if(failure == null)
+					failure = thrown;
+			}
+
+			for(int v : computation.candidates) {
+				if(computation.found.get(v) == 1)
+					result.add(v);
+			}
+
+			if(failure instanceof TimeoutException) throw (TimeoutException) failure;
+			if(failure instanceof ContradictionException) throw (ContradictionException) failure;
+			if(failure instanceof RuntimeException) throw (RuntimeException) failure;
+			if(failure instanceof Error) throw (Error) failure;
+			if(failure != null) throw new RuntimeException(failure);
+		}
+	}
+
+	/**
+	 * Waits for the given worker, returning what it threw, if anything.
+	 */
+	private static Throwable await(Future<Void> worker) {
+		boolean interrupted = false;
+		try {
+			while(true) {
+				try {
+					worker.get();
+					return null;
+				} catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch(ExecutionException e) {
+			return e.getCause();
+		} finally {
+			if(interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs worker w on the candidates at positions w, w + workers, w + 2*workers, ...
+	 */
+	private void work(int w) throws TimeoutException, ContradictionException {
+		final MinSATSolver solver = replicas[w];
+		final IntStack assumptions = new IntStack(positives.length + 1);
+		assumptions.pushAll(positives);
+		final IntStack wanted = new IntStack(candidates.length / replicas.length + 1);
+		for(int i = w; i < candidates.length; i += replicas.length)
+			wanted.push(candidates[i]);
+
+		while(true) {
+			// Drop what this or another worker has found.
+			int stillWanted = 0;
+			for(int i = 0; i < wanted.size(); i++) {
+				final int v = wanted.get(i);
+				if(found.get(v) == 0)
+					wanted.set(stillWanted++, v);
+			}
+			wanted.truncate(stillWanted);
+			if(wanted.isEmpty())
+				return;
+
+			final boolean satisfiable;
+			if(wanted.size() > 1) {
+				final IConstr disjunction = solver.addConstraint(wanted);
+				try {
+					satisfiable = solver.solve(assumptions);
+				} finally {
+					solver.removeConstraint(disjunction);
+				}
+			} else {
+				assumptions.push(wanted.get(0));
+				try {
+					satisfiable = solver.solve(assumptions);
+				} finally {
+					assumptions.pop();
+				}
+			}
+
+			if(!satisfiable)
+				return;
+
+			for(int v : candidates) {
+				if(found.get(v) == 0 && solver.valueOf(v))
+					found.set(v, 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,323 @@
+package minkodkod;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import minkodkod.MinSolver.MinSolutionIterator;
+import kodkod.util.ints.IntSet;
+import minkodkod.engine.fol2sat.MinTranslation;
+
+// ALUMINUM: New class. Cube-and-conquer enumeration of minimal models.
+
+/**
+ * An iterator over the minimal models of a spec, found by several workers at once. The
+ * space of models is split into cubes: the assignments to the few primary variables that
+ * occur most often in the CNF. Workers take the cubes in turn, and each enumerates the
+ * minimal models of its cube on a solver of its own (a replica of the translation's).
+ * The cube only bounds the search for candidates; a candidate is minimized without it,
+ * so every model is minimal in the whole space, though it may lie in another cube.
+ * <p>
+ * A model's cone restriction clauses rule its supermodels out in every cube, so each
+ * worker shares the clauses it adds, and imports the others' before looking for its
+ * next model. A cube runs out only once every minimal model in it has been found by some
+ * worker; when all the cubes have, every minimal model has been returned. Two workers may
+ * find the same model before either one's clause reaches the other; it is returned once.
+ * <p>
+ * A worker whose model search runs out of budget (see MinExtraOptions) tries again a
+ * few times, then gives up the cube. Not every minimal model may have been returned
+ * then, so the last solution is UNKNOWN rather than unsatisfiable.
+ * <p>
+ * Models come in the order the workers find them, which varies from run to run. As with
+ * MinSolver.solveAll(), the last solution is unsatisfiable, and hasNext() is false after
+ * it. The workers run ahead of the caller by a few models at most.
+ */
+public final class ParallelEnumeration implements Iterator<MinSolution> {
+	/* cubes per worker, so that a worker that finishes early has others to take */
+	private static final int CUBES_PER_WORKER = 4;
+	/* no more split variables than this, however many workers there are */
+	private static final int MAX_SPLIT_VARIABLES = 12;
+	/* searches in a row that may run out of budget before a worker gives up its cube */
+	private static final int UNKNOWN_ATTEMPTS = 3;
+
+	private final MinTranslation translation;
+	private final MinSolutionIterator[] workers;
+	/* the primary variables the cubes assign; cube c makes splitVariables[j] true iff bit j of c is set */
+	private final int[] splitVariables;
+	private final int cubes;
+	private final AtomicInteger nextCube = new AtomicInteger(0);
+
+	/* the cone restriction clauses the workers have added, in order; guarded by itself */
+	private final List<int[]> sharedConeClauses = new ArrayList<int[]>();
+	/* the models returned or queued, by their true primary variables; guarded by itself.
+	 * Comparing the exact sets finds every duplicate only because the cubes split on
+	 * primary variables (see splitVariables()): a cube then fixes nothing a model is not
+	 * already identified by. Splitting on other variables would need another key. */
+	private final Set<IntSet> found = new HashSet<IntSet>();
+
+	/* the models found and not yet returned; guarded by this */
+	private final LinkedList<MinSolution> ready = new LinkedList<MinSolution>();
+	private final int capacity;
+	/* the workers still running, the solution to end with, and the first failure; guarded by this */
+	private int running;
+	private MinSolution last = null;
+	private Throwable failure = null;
+	private boolean ended = false;
+	/* whether a worker gave up a cube; guarded by this */
+	private boolean incomplete = false;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Starts enumerating the minimal models of base's spec on the given number of workers.
+	 */
+	ParallelEnumeration(MinSolutionIterator base, int workers) {
+		this.capacity = 2 * workers;
+
+		if(!base.translate()) {
+			// Trivial: the lower bounds are the only minimal model, if any. Nothing to split.
+			this.translation = null;
+			this.workers = new MinSolutionIterator[0];
+			this.splitVariables = new int[0];
+			this.cubes = 0;
+			final MinSolution trivial = base.getLastSolution();
+			if(trivial.sat())
+				ready.add(trivial);
+			last = base.advance();
+			return;
+		}
+
+		this.translation = base.getTranslation();
+		this.splitVariables = splitVariables(translation, workers * CUBES_PER_WORKER);
+		this.cubes = 1 << splitVariables.length;
+
+		this.workers = new MinSolutionIterator[workers];
+		for(int w = 0; w < workers; w++)
+			this.workers[w] = MinSolutionIterator.cubeWorker(base,
+					(w == 0) ? translation.cnf() : translation.cnf().replicate());
+
+		this.running = workers;
+		final ExecutorService pool = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "aluminum-enumeration");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		for(int w = 0; w < workers; w++) {
+			final MinSolutionIterator worker = this.workers[w];
+			pool.execute(new Runnable() {
+				public void run() {
+					Throwable thrown = null;
+					MinSolution unsat = null;
+					try {
+						unsat = work(worker);
+					} catch(Throwable t) {
+						thrown = t;
+					}
+					finished(unsat, thrown);
+				}
+			});
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * Returns the split variables for (at least, if there are enough primary variables)
+	 * the given number of cubes: the primary variables that occur in the most clauses.
+	 */
+	private static int[] splitVariables(MinTranslation translation, int cubes) {
+		final int primary = translation.numPrimaryVariables();
+		int count = 0;
+		while((1 << count) < cubes && count < MAX_SPLIT_VARIABLES)
+			count++;
+		count = Math.min(count, primary);
+
+		final int[] occurrences = translation.cnf().occurrences(primary);
+		final int[] result = new int[count];
+		final boolean[] taken = new boolean[primary + 1];
+		for(int j = 0; j < count; j++) {
+			int best = 0;
+			for(int var = 1; var <= primary; var++) {
+				if(!taken[var] && (best == 0 || occurrences[var] > occurrences[best]))
+					best = var;
+			}
+			taken[best] = true;
+			result[j] = best;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the assumptions of the given cube.
+	 */
+	private int[] cube(int c) {
+		final int[] result = new int[splitVariables.length];
+		for(int j = 0; j < splitVariables.length; j++)
+			result[j] = ((c >> j) & 1) != 0 ? splitVariables[j] : -splitVariables[j];
+		return result;
+	}
+
+	/**
+	 * Enumerates the cubes the given worker gets, until none are left or the enumeration
+	 * is cancelled. Returns the unsatisfiable solution of the last cube the worker ran
+	 * out of, or null if there is none. A cube whose model search runs out of budget
+	 * UNKNOWN_ATTEMPTS times in a row is given up, and the enumeration is incomplete.
+	 */
+	private MinSolution work(MinSolutionIterator worker) {
+		MinSolution unsat = null;
+		int imported = 0;
+		for(int c = nextCube.getAndIncrement(); c < cubes && !cancelled; c = nextCube.getAndIncrement()) {
+			worker.setCube(cube(c));
+			int unknowns = 0;
+			while(!cancelled) {
+				imported = importConeClauses(worker, imported);
+
+				final MinSolution solution = worker.advance();
+				if(solution.outcome() == MinSolution.Outcome.UNKNOWN) {
+					if(++unknowns < UNKNOWN_ATTEMPTS)
+						continue; // out of budget: try again, unless cancelled
+					synchronized(this) {
+						incomplete = true;
+					}
+					break;
+				}
+				unknowns = 0;
+				if(!solution.sat()) {
+					unsat = solution;
+					break;
+				}
+
+				synchronized(sharedConeClauses) {
+					sharedConeClauses.addAll(worker.recentConeClauses());
+				}
+				final boolean isNew;
+				synchronized(found) {
+					isNew = found.add(solution.truePrimaryVariables());
+				}
+				if(isNew && !offer(solution))
+					break;
+			}
+		}
+		return unsat;
+	}
+
+	/**
+	 * Adds the shared cone clauses from the given index on to the given worker, and
+	 * returns the index of the next clause to import.
+	 */
+	private int importConeClauses(MinSolutionIterator worker, int from) {
+		final List<int[]> clauses;
+		synchronized(sharedConeClauses) {
+			clauses = new ArrayList<int[]>(sharedConeClauses.subList(from, sharedConeClauses.size()));
+		}
+		// The worker's own clauses come back too; they are subsumed, so skipped.
+		for(int[] clause : clauses)
+			worker.addSharedConeRestriction(clause);
+		return from + clauses.size();
+	}
+
+	/**
+	 * Queues a model for the caller, waiting while the queue is full. Returns false if
+	 * the enumeration was cancelled instead.
+	 */
+	private synchronized boolean offer(MinSolution solution) {
+		while(ready.size() >= capacity && !cancelled) {
+			try {
+				wait();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		if(cancelled)
+			return false;
+		ready.add(solution);
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Records that a worker is done, with its last unsatisfiable solution, or with the
+	 * given failure, which cancels the others.
+	 */
+	private void finished(MinSolution unsat, Throwable thrown) {
+		if(thrown != null)
+			cancel();
+		synchronized(this) {
+			if(unsat != null)
+				last = unsat;
+			if(thrown != null && failure == null)
+				failure = thrown;
+			running--;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Returns true until the last (unsatisfiable) solution has been returned.
+	 * @see java.util.Iterator#hasNext()
+	 */
+	public synchronized boolean hasNext() {
+		return !ended;
+	}
+
+	/**
+	 * Returns the next minimal model, waiting for a worker to find one; once all the
+	 * cubes have run out, the unsatisfiable solution. If the enumeration was cancelled,
+	 * or a worker gave up a cube, the last solution is UNKNOWN instead; if a worker 
+	 * failed, its exception is rethrown.
+	 * @see java.util.Iterator#next()
+	 */
+	public synchronized MinSolution next() {
+		while(ready.isEmpty() && running > 0) {
+			try {
+				wait();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new AbortedException(e);
+			}
+		}
+		if(!ready.isEmpty()) {
+			notifyAll();
+			return ready.removeFirst();
+		}
+
+		if(failure instanceof RuntimeException) throw (RuntimeException) failure;
+		if(failure instanceof Error) throw (Error) failure;
+		if(failure != null) throw new RuntimeException(failure);
+
+		if(!ended) {
+			ended = true;
+			if((cancelled || incomplete) && workers.length > 0)
+				last = MinSolution.unknown(new MinStatistics(translation, 0, 0));
+		}
+		return last;
+	}
+
+	/**
+	 * Stops the workers: the SAT calls in progress give up, and next() returns the models
+	 * already found, then an UNKNOWN solution. Safe to call from another thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+		for(MinSolutionIterator worker : workers)
+			worker.cancel();
+		synchronized(this) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * @see java.util.Iterator#remove()
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,65 @@
+package minkodkod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// ALUMINUM: New class. Bounds what one call to an iterator may spend.
+
+/**
+ * The limits of one call to MinSolutionIterator.next() or getConsistentFacts(): a
+ * wall-clock deadline, a number of conflicts per SAT call, and whether the caller has
+ * cancelled the call. The solvers the call works on are attached to it, and every SAT
+ * call they make is bounded by it; once it is exhausted, their SAT calls in progress
+ * give up and further ones fail at once, with a BudgetExhaustedException.
+ */
+final class SolveBudget {
+	/* System.currentTimeMillis() at which the call must give up, or 0 */
+	final long deadline;
+	/* the number of conflicts each SAT call may meet, or 0 */
+	final int conflicts;
+
+	private volatile boolean cancelled = false;
+	/* the solvers the call works on; guarded by this */
+	private final List<MinSATSolver> solvers = new ArrayList<MinSATSolver>(1);
+
+	SolveBudget(long deadline, int conflicts) {
+		this.deadline = deadline;
+		this.conflicts = conflicts;
+	}
+
+	/**
+	 * Returns true if the call has been cancelled or is past its deadline.
+	 */
+	boolean exhausted() {
+		return cancelled || (deadline != 0 && System.currentTimeMillis() >= deadline);
+	}
+
+	/**
+	 * Makes the given solver's SAT calls subject to this budget.
+	 */
+	void attach(MinSATSolver solver) {
+		synchronized(this) {
+			solvers.add(solver);
+		}
+		solver.setBudget(this);
+	}
+
+	/**
+	 * Frees the attached solvers from this budget.
+	 */
+	void detach() {
+		synchronized(this) {
+			for(MinSATSolver solver : solvers)
+				solver.setBudget(null);
+			solvers.clear();
+		}
+	}
+
+	/**
+	 * Exhausts this budget. The SAT calls in progress on its solvers give up at their
+	 * next backjump (see MinSATSolver). Safe to call from another thread.
+	 */
+	void cancel() {
+		cancelled = true;
+	}
+}
@@ -0,0 +1,54 @@
+package minkodkod;
+
+import minkodkod.MinStatistics.Phase;
+
+// ALUMINUM: New class. What MinStatistics reports about the solving of one model.
+
+/**
+ * The time spent in each solving phase, and the work done by the SAT solver, while
+ * an iterator looks for its next model. Reset at the start of each search; the
+ * solver's counters are taken as the difference between two snapshots, so they only
+ * count the iterator's own calls while it holds the solver.
+ */
+final class SolveCounters {
+	/* indexed by Phase.ordinal() */
+	final long[] nanos = new long[Phase.values().length];
+	final long[] counts = new long[Phase.values().length];
+	long satCalls, assumptions, conflicts, propagations, clausesAdded, clausesRemoved;
+
+	/**
+	 * Clears the counters and takes a snapshot of the given solver's counters.
+	 */
+	void start(MinSATSolver solver) {
+		for(int ii = 0; ii < nanos.length; ii++) {
+			nanos[ii] = 0;
+			counts[ii] = 0;
+		}
+		satCalls = -solver.satCalls();
+		assumptions = -solver.assumptionsPassed();
+		conflicts = -solver.conflicts();
+		propagations = -solver.propagations();
+		clausesAdded = -solver.clausesAdded();
+		clausesRemoved = -solver.clausesRemoved();
+	}
+
+	/**
+	 * Adds the given solver's counters since start() was called.
+	 */
+	void stop(MinSATSolver solver) {
+		satCalls += solver.satCalls();
+		assumptions += solver.assumptionsPassed();
+		conflicts += solver.conflicts();
+		propagations += solver.propagations();
+		clausesAdded += solver.clausesAdded();
+		clausesRemoved += solver.clausesRemoved();
+	}
+
+	/**
+	 * Adds the time since start, as given by System.nanoTime(), to the given phase.
+	 */
+	void add(Phase phase, long start) {
+		nanos[phase.ordinal()] += System.nanoTime() - start;
+		counts[phase.ordinal()]++;
+	}
+}
@@ -0,0 +1,98 @@
+package minkodkod;
+
+import java.util.Arrays;
+
+import kodkod.util.ints.IntBitSet;
+
+// ALUMINUM: New class. Lets getConsistentFacts() reuse the models earlier searches found.
+
+/**
+ * A bounded log of models of the translation's CNF, kept as bitsets over the primary
+ * variables. A logged model W witnesses, for any model M below it (every primary
+ * variable true in M is true in W), that each variable true in W but false in M is a
+ * consistent fact of M. So a consistent-fact search can mark those facts before making
+ * a SAT call. When the log is full, the oldest model is overwritten.
+ *
+ * Only models of the CNF with the SBP off and no cone restrictions, or of stronger
+ * clause sets (the CNF plus any of those), may be logged.
+ */
+final class WitnessLog {
+	static final int DEFAULT_CAPACITY = 256;
+
+	private final int numPrimaryVariables;
+	private final int words;
+	/* witnesses[i] is the i-th logged model's bitset, or null */
+	private final long[][] witnesses;
+	private int next = 0;
+
+	/* bitsets of the model being logged and of the model whose facts are being marked */
+	private final long[] scratch;
+	private final long[] model;
+
+	WitnessLog(int numPrimaryVariables, int capacity) {
+		this.numPrimaryVariables = numPrimaryVariables;
+		this.words = (numPrimaryVariables >>> 6) + 1;
+		this.witnesses = new long[capacity][];
+		this.scratch = new long[words];
+		this.model = new long[words];
+	}
+
+	/**
+	 * Logs the model whose primary variables' values are the first numPrimaryVariables
+	 * entries of the given propositional model (positive iff true), unless it is the
+	 * model logged last.
+	 */
+	void add(int[] propositionalModel) {
+		Arrays.fill(scratch, 0L);
+		for(int i = 1; i <= numPrimaryVariables; i++) {
+			if(propositionalModel[i - 1] > 0)
+				scratch[i >>> 6] |= 1L << i;
+		}
+
+		final long[] last = witnesses[(next + witnesses.length - 1) % witnesses.length];
+		if(last != null && Arrays.equals(last, scratch))
+			return;
+
+		if(witnesses[next] == null)
+			witnesses[next] = new long[words];
+		System.arraycopy(scratch, 0, witnesses[next], 0, words);
+		next = (next + 1) % witnesses.length;
+	}
+
+	/**
+	 * Adds to found every variable that some logged model above the given one makes true
+	 * and the given model makes false.
+	 * @param positives the primary variables true in the model
+	 */
+	void markWitnessed(IntStack positives, IntBitSet found) {
+		Arrays.fill(model, 0L);
+		for(int i = 0; i < positives.size(); i++) {
+			final int v = positives.get(i);
+			model[v >>> 6] |= 1L << v;
+		}
+
+		for(long[] witness : witnesses) {
+			if(witness == null || !above(witness))
+				continue;
+			for(int w = 0; w < words; w++) {
+				long facts = witness[w] & ~model[w];
+				while(facts != 0) {
+					final long bit = facts & -facts;
+					found.add((w << 6) + Long.numberOfTrailingZeros(bit));
+					facts ^= bit;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if every variable true in this.model is true in the given witness.
+	 */
+	private boolean above(long[] witness) {
+		for(int w = 0; w < words; w++) {
+			if((model[w] & ~witness[w]) != 0)
+				return false;
+		}
+		return true;
+	}
+}
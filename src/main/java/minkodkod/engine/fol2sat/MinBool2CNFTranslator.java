@@ -56,7 +56,8 @@ final class MinBool2CNFTranslator implements BooleanVisitor<int[], Object> {
 
 	static boolean addClause(MinSATSolver solver, boolean sbp, int[] clause)
 	{
-		logger.debug("Adding clause: "+Arrays.toString(clause));
+		if(logger.isDebugEnabled())
+			logger.debug("Adding clause: "+Arrays.toString(clause));
 		if(sbp) {
 			return solver.addSBPClause(clause);			
 		}
@@ -65,7 +66,8 @@ final class MinBool2CNFTranslator implements BooleanVisitor<int[], Object> {
 	
 	static void addCircuitToSolver(MinSATSolver solver, boolean forSBP, BooleanFormula circuit, SATFactory factory, int numPrimaryVariables) {
 		
-		logger.debug("Add circuit to solver: "+circuit);
+		if(logger.isDebugEnabled())
+			logger.debug("Add circuit to solver: "+circuit);
 		
 		final MinBool2CNFTranslator translator = new MinBool2CNFTranslator(solver, forSBP, numPrimaryVariables, circuit);
 //		System.out.println("--------------transls2-------------");
@@ -110,7 +112,8 @@ final class MinBool2CNFTranslator implements BooleanVisitor<int[], Object> {
 		// Add the SBP -- but also record the clauses so we can remove/re-add them later				
 		if(sbp instanceof BooleanFormula)
 		{
-      logger.debug("SB: " + sbp);
+      if(logger.isDebugEnabled())
+        logger.debug("SB: " + sbp);
 			addCircuitToSolver(minsolver, true, (BooleanFormula)sbp, factory, numPrimaryVariables);
 		}
 		// else do nothing (it's True; no clauses)				
@@ -23,22 +23,16 @@ package minkodkod.engine.fol2sat;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import minkodkod.MinSATSolver;
+import minkodkod.MinStatistics;
 
 import kodkod.ast.Relation;
 import kodkod.engine.bool.BooleanFormula;
 import kodkod.engine.bool.BooleanValue;
-import kodkod.engine.bool.BooleanVariable;
-import kodkod.engine.bool.BooleanVisitor;
-import kodkod.engine.bool.ITEGate;
-import kodkod.engine.bool.MultiGate;
-import kodkod.engine.bool.NotGate;
-import kodkod.engine.bool.Operator.Nary;
 import kodkod.instance.Bounds;
 import kodkod.instance.Instance;
 import kodkod.instance.TupleFactory;
@@ -66,15 +60,25 @@ public final class MinTranslation {
 	private final Map<Relation, IntSet> primaryVarUsage;
 	private final TranslationLog log;
 	private final int maxPrimaryLit;
+	private final PrimaryVariableIndex primaryIndex;
 	
 	public final Set<IntSet> symmetries;
 	//public final Set<Map<Integer, Integer>> permutations;
 	public final List<Map<Integer, Integer>> permutations;
 	public final BooleanValue sbpValue;
+	/* compiled form of sbpValue, or null if sbpValue is a constant */
+	private final SBPEvaluator sbpEvaluator;
+	/* replicas of solver with the SBP off, made on demand for parallel consistent facts */
+	private final List<MinSATSolver> replicas = new ArrayList<MinSATSolver>();
+	/* held by whoever is using the replicas */
+	private final Object replicasLock = new Object();
+	/* nanoseconds spent in, and entries into, each phase of translation, by MinStatistics.Phase.ordinal() */
+	private final long[] phaseNanos, phaseCounts;
 	
 	/**
 	 * Constructs a new Translation object for the given solver, bounds,  mapping
-	 * from Relations to literals, and TranslationLog.
+	 * from Relations to literals, and TranslationLog, and the time spent in each phase
+	 * of the translation.
 	 * @requires maxPrimaryLit = max(varUsage[Relation].max)
 	 * @requires bounds.relations = varUsage.IntSet
 	 * @effects this.solver' = solver && this.bounds' = bounds
@@ -82,15 +86,19 @@ public final class MinTranslation {
 	MinTranslation(MinSATSolver solver, Bounds bounds, Map<Relation, IntSet> varUsage,
 			int maxPrimaryLit, TranslationLog log, Set<IntSet> symmetries,
 			List<Map<Integer, Integer>> permutations,
-			BooleanValue sbpValue) {			
+			BooleanValue sbpValue, long[] phaseNanos, long[] phaseCounts) {			
 		this.solver = solver;				
 		this.bounds = bounds;
 		this.primaryVarUsage = varUsage;
 		this.maxPrimaryLit = maxPrimaryLit;
+		this.primaryIndex = new PrimaryVariableIndex(bounds, varUsage, maxPrimaryLit);
 		this.log = log;
 		this.symmetries = symmetries;		
 		this.permutations = permutations;
 		this.sbpValue = sbpValue;
+		this.sbpEvaluator = (sbpValue instanceof BooleanFormula) ? new SBPEvaluator((BooleanFormula)sbpValue) : null;
+		this.phaseNanos = phaseNanos;
+		this.phaseCounts = phaseCounts;
 	}
 
 	/**
@@ -104,6 +112,30 @@ public final class MinTranslation {
 		return solver;
 	}
 	
+	/**
+	 * Returns count replicas of this.cnf() (see {@link MinSATSolver#replicate()}) with 
+	 * the SBP deactivated. Replicas are made on first request and handed out again by 
+	 * later calls, so a caller must hold replicasLock() while it uses them, and remove 
+	 * any clause it adds before it is done with them.
+	 * @return count replicas of this translation's solver, with the SBP off.
+	 */
+	public synchronized MinSATSolver[] replicas(int count) {
+		while(replicas.size() < count) {
+			MinSATSolver replica = solver.replicate();
+			replica.deactivateSBP();
+			replicas.add(replica);
+		}
+		return replicas.subList(0, count).toArray(new MinSATSolver[count]);
+	}
+	
+	/**
+	 * Returns the lock that callers of replicas() hold while they use the replicas.
+	 * It is the same object for every call, whereas replicas() returns a new array.
+	 */
+	public Object replicasLock() {
+		return replicasLock;
+	}
+	
 	/**
 	 * If this.solver.solve() is true, returns 
 	 * an interpretation of the cnf solution as a 
@@ -119,6 +151,15 @@ public final class MinTranslation {
 	 * outcome of the last call was not <code>true</code>.
 	 */
 	public Instance interpret() {
+		return interpret(solver);
+	}
+	
+	/**
+	 * Like interpret(), but reads the values of the primary variables from the last
+	 * model of the given solver, which must hold (a copy of) this translation's CNF.
+	 * @return an interpretation of the given solver's last model.
+	 */
+	public Instance interpret(MinSATSolver solver) {
 		final TupleFactory f = bounds.universe().factory();
 		final Instance instance = new Instance(bounds.universe());
 //		System.out.println(varUsage);
@@ -139,7 +180,41 @@ public final class MinTranslation {
 		}
 		return instance;
 	}
-	
+
+	/**
+	 * Like interpret(), but takes the primary variables that are true in the model.
+	 * @return an interpretation of the model whose true primary variables are the given ones.
+	 */
+	public Instance interpret(IntSet truePrimaryVariables) {
+		final Instance instance = new Instance(bounds.universe());
+		for(Relation r : bounds.relations())
+			instance.add(r, interpret(r, truePrimaryVariables));
+		return instance;
+	}
+
+	/**
+	 * Returns the tuples of the given relation in the model whose true primary variables
+	 * are the given ones, or null if the relation is not in this.bounds.
+	 * @return the value of r in the model whose true primary variables are the given ones.
+	 */
+	public TupleSet interpret(Relation r, IntSet truePrimaryVariables) {
+		final TupleSet lower = bounds.lowerBound(r);
+		if(lower == null)
+			return null;
+		final IntSet indeces = Ints.bestSet(lower.capacity());
+		indeces.addAll(lower.indexView());
+		final IntSet vars = primaryVarUsage.get(r);
+		if (vars!=null) {
+			int lit = vars.min();
+			for(IntIterator iter = bounds.upperBound(r).indexView().iterator(); iter.hasNext();) {
+				final int index = iter.next();
+				if (!indeces.contains(index) && truePrimaryVariables.contains(lit++))
+					indeces.add(index);
+			}
+		}
+		return bounds.universe().factory().setOf(r.arity(), indeces);
+	}
+
 	/**
 	 * Returns the set of primary variable literals  that represent
 	 * the tuples in the given relation.  If no literals were allocated
@@ -151,6 +226,15 @@ public final class MinTranslation {
 		return primaryVarUsage.get(relation);
 	}
 	
+	/**
+	 * Returns the index between primary variables and the relational facts they 
+	 * represent (w.r.t. this.bounds, which are the post-Skolem bounds).
+	 * @return the primary variable index of this translation.
+	 */
+	public PrimaryVariableIndex primaryIndex() {
+		return primaryIndex;
+	}
+	
 	/**
 	 * Returns the number of primary variables allocated 
 	 * during translation.  Primary variables represent
@@ -166,6 +250,24 @@ public final class MinTranslation {
 		return maxPrimaryLit;
 	}
 	
+	/**
+	 * Returns the number of nanoseconds spent in the given phase of translation, or 0
+	 * if it is a phase of solving.
+	 * @return the number of nanoseconds spent in the given phase of translation.
+	 */
+	public long phaseNanos(MinStatistics.Phase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+	
+	/**
+	 * Returns the number of times the given phase of translation was entered, or 0
+	 * if it is a phase of solving.
+	 * @return the number of times the given phase of translation was entered.
+	 */
+	public long phaseCount(MinStatistics.Phase phase) {
+		return phaseCounts[phase.ordinal()];
+	}
+	
 	/**
 	 * If this.options.logTranslation was set to true, returns the log of the
 	 * translation that produced this Translation object.  Otherwise returns null.
@@ -180,113 +282,17 @@ public final class MinTranslation {
 	// and so any secondary variables in the SBP clauses may not match. We need instead to evaluate the original
 	// SBP Boolean circuit on this model.
 	public boolean satisfiesSBP(int[] propositionalModel) {
-		Set<Integer> positives = new HashSet<Integer>(propositionalModel.length);
-		
-		for(int x : propositionalModel) {
-			if(x > 0) positives.add(x);		
-		}
-				
-		if(sbpValue instanceof BooleanFormula)
-			return ((BooleanFormula)sbpValue).accept(new BooleanFormulaEvaluator(positives), 0);
+		if(sbpEvaluator != null)
+			return sbpEvaluator.satisfiedBy(propositionalModel);
 		else
 			return true;		
 	}
 	
-	// TODO: share code between this and satisfiesSBP.
 	public boolean negationSatisfiesSBP(Set<Integer> negatedModel) {
-		Set<Integer> positives = new HashSet<Integer>(negatedModel.size());
-		
-		for(int x : negatedModel) {
-			if(x < 0) positives.add(-1*x);		
-		}
-						
-		if(sbpValue instanceof BooleanFormula)
-			return ((BooleanFormula)sbpValue).accept(new BooleanFormulaEvaluator(positives), 0);
+		if(sbpEvaluator != null)
+			return sbpEvaluator.satisfiedByNegationOf(negatedModel);
 		else
 			return true;		
 	}
 	
 }
-
-// Can't trust secondary variables at all. So need to restrict the input to only primary literals
-
-final class BooleanFormulaEvaluator implements BooleanVisitor<Boolean, Integer> {
-	final Set<Integer> positives;
-	
-	public BooleanFormulaEvaluator(Set<Integer> positives) {
-		this.positives = positives;
-	}
-	
-	private boolean andHelper(MultiGate multigate, int depth)
-	{
-		for(int ii=0;ii<multigate.size();ii++) {
-			if(! multigate.input(ii).accept(this, depth+1))
-				return false;			
-		}		
-		return true;	
-	}
-
-	private boolean orHelper(MultiGate multigate, int depth)
-	{
-		for(int ii=0;ii<multigate.size();ii++) {
-			if(multigate.input(ii).accept(this, depth+1))
-				return true;
-		}
-		return false;
-	}
-	
-	private String pad(int depth) 
-	{
-		 return new String(new char[depth]).replace("\0", "  ");
-	}
-	
-	@Override
-	public Boolean visit(MultiGate multigate, Integer depth) {		
-		boolean result;
-		
-		//System.out.println(pad(depth)+"checking "+multigate+": ");		
-
-		if(multigate.op() == Nary.AND) {
-			result = andHelper(multigate, depth);
-					
-		} else if(multigate.op() == Nary.OR) { 
-			result = orHelper(multigate, depth);
-		}
-		else { 
-			throw new UnsupportedOperationException("BooleanFormulaEvaluator encountered op = "+multigate.op());
-		}
-		
-		//System.out.println(pad(depth)+"result: "+result);
-		return result;		
-	}
-
-	@Override
-	public Boolean visit(ITEGate ite, Integer depth) {
-		// 0 ? 1 : 2
-		boolean result;
-		//System.out.println(pad(depth)+"checking "+ite+": ");
-		if(ite.input(0).accept(this,  depth+1)) 
-			result = ite.input(1).accept(this, depth+1);
-		else 
-			result = ite.input(2).accept(this, depth+1);
-		
-		//System.out.println(pad(depth)+"result: "+result);
-		return result;
-	}
-
-	@Override
-	public Boolean visit(NotGate negation, Integer depth) {
-		// not 0 				
-		//System.out.println(pad(depth)+"checking "+negation+": ");
-		return ! negation.input(0).accept(this, depth+1);		
-	}
-
-	@Override
-	public Boolean visit(BooleanVariable variable, Integer depth) {
-		// v
-		//System.out.println(pad(depth)+"checking bool var "+variable+": "+positives.contains(variable.label()));
-		return positives.contains(variable.label()); 
-	}
-
-}
-
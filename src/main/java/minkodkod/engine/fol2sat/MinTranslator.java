@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 
 import minkodkod.MinSATSolver;
+import minkodkod.MinStatistics;
 
 import kodkod.ast.Expression;
 import kodkod.ast.Formula;
@@ -140,6 +141,10 @@ public final class MinTranslator {
 	private final Options options;
 	
 	private TranslationLog log;
+	
+	/* nanoseconds spent in, and entries into, each phase, by MinStatistics.Phase.ordinal() */
+	private final long[] phaseNanos = new long[MinStatistics.Phase.values().length];
+	private final long[] phaseCounts = new long[MinStatistics.Phase.values().length];
 		
 	/**
 	 * Constructs a Translator for the given formula, bounds and options.
@@ -188,7 +193,18 @@ public final class MinTranslator {
 		if (!annotated.usesInts()) bounds.ints().clear();
 		
 		// detect symmetries
-		return new MinSymmetryBreaker(bounds, options.reporter());
+		final long start = System.nanoTime();
+		final MinSymmetryBreaker breaker = new MinSymmetryBreaker(bounds, options.reporter());
+		timed(MinStatistics.Phase.SYMMETRY_DETECTION, start);
+		return breaker;
+	}
+	
+	/**
+	 * Adds the time since start, as given by System.nanoTime(), to the given phase.
+	 */
+	private void timed(MinStatistics.Phase phase, long start) {
+		phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+		phaseCounts[phase.ordinal()]++;
 	}
 	
 	/**
@@ -203,20 +219,35 @@ public final class MinTranslator {
 	private AnnotatedNode<Formula> optimizeFormula(AnnotatedNode<Formula> annotated, MinSymmetryBreaker breaker) {	
 		options.reporter().optimizingBoundsAndFormula();
 
+		long start = System.nanoTime();
 		if (options.logTranslation()==0) { // no logging
 			annotated = inlinePredicates(annotated, breaker.breakMatrixSymmetries(annotated.predicates(), true).keySet());
-			return options.skolemDepth()>=0 ? Skolemizer.skolemize(annotated, bounds, options) : annotated;
+			timed(MinStatistics.Phase.SBP_GENERATION, start);
+			if (options.skolemDepth()<0)
+				return annotated;
+			start = System.nanoTime();
+			annotated = Skolemizer.skolemize(annotated, bounds, options);
+			timed(MinStatistics.Phase.SKOLEMIZATION, start);
+			return annotated;
 		} else { // logging; inlining of predicates *must* happen last when logging is enabled
 			if (options.coreGranularity()==1) { 
 				annotated = FormulaFlattener.flatten(annotated, false);
+				timed(MinStatistics.Phase.FLATTENING, start);
 			}
 			if (options.skolemDepth()>=0) {
+				start = System.nanoTime();
 				annotated = Skolemizer.skolemize(annotated, bounds, options);
+				timed(MinStatistics.Phase.SKOLEMIZATION, start);
 			}
 			if (options.coreGranularity()>1) { 
+				start = System.nanoTime();
 				annotated = FormulaFlattener.flatten(annotated, options.coreGranularity()==3);
+				timed(MinStatistics.Phase.FLATTENING, start);
 			}
-			return inlinePredicates(annotated, breaker.breakMatrixSymmetries(annotated.predicates(), false));
+			start = System.nanoTime();
+			annotated = inlinePredicates(annotated, breaker.breakMatrixSymmetries(annotated.predicates(), false));
+			timed(MinStatistics.Phase.SBP_GENERATION, start);
+			return annotated;
 		}
 	}
 	
@@ -306,11 +337,13 @@ public final class MinTranslator {
 		
 		options.reporter().translatingToBoolean(annotated.node(), bounds);
 		
+		final long start = System.nanoTime();
 		final LeafInterpreter interpreter = LeafInterpreter.exact(bounds, options);
 		
 		if (options.logTranslation()>0) {
 			final TranslationLogger logger = options.logTranslation()==1 ? new MemoryLogger(annotated, bounds) : new FileLogger(annotated, bounds);
 			final BooleanAccumulator circuit = FOL2BoolTranslator.translate(annotated, interpreter, logger);
+			timed(MinStatistics.Phase.TRANSLATION_TO_BOOLEAN, start);
 			log = logger.log();
 			if (circuit.isShortCircuited()) {
 				throw new TrivialFormulaException(annotated.node(), bounds, circuit.op().shortCircuit(), log);
@@ -320,6 +353,7 @@ public final class MinTranslator {
 			return generateSBP(circuit, interpreter, breaker);
 		} else {
 			final BooleanValue circuit = (BooleanValue)FOL2BoolTranslator.translate(annotated, interpreter);
+			timed(MinStatistics.Phase.TRANSLATION_TO_BOOLEAN, start);
 			if (circuit.op()==Operator.CONST) {
 				throw new TrivialFormulaException(annotated.node(), bounds, (BooleanConstant)circuit, null);
 			} 
@@ -339,7 +373,9 @@ public final class MinTranslator {
 		options.reporter().generatingSBP();
 		final BooleanFactory factory = interpreter.factory();
 		//circuit.add(breaker.generateSBP(interpreter, options.symmetryBreaking())); 
+		final long start = System.nanoTime();
 		BooleanValue sbp = breaker.generateSBP(interpreter, options.symmetryBreaking());
+		timed(MinStatistics.Phase.SBP_GENERATION, start);
 		//return toCNF((BooleanFormula)factory.accumulate(circuit), factory.numberOfVariables(), interpreter.vars());
 		return toCNF((BooleanFormula)factory.accumulate(circuit), 
 				     sbp,
@@ -359,7 +395,9 @@ public final class MinTranslator {
 	private MinTranslation generateSBP(AnnotatedNode<Formula> annotated, BooleanFormula circuit, LeafInterpreter interpreter, MinSymmetryBreaker breaker) 
 	throws TrivialFormulaException {
 		options.reporter().generatingSBP();
+		final long start = System.nanoTime();
 		final BooleanValue sbp = breaker.generateSBP(interpreter, options.symmetryBreaking());						
+		timed(MinStatistics.Phase.SBP_GENERATION, start);
 		
 		//return flatten(annotated, (BooleanFormula)factory.and(circuit, sbp), factory.and(circuit, sbp), interpreter);
 		return flatten(annotated, (BooleanFormula)circuit, sbp, interpreter, breaker);
@@ -380,7 +418,9 @@ public final class MinTranslator {
 		final BooleanFactory factory = interpreter.factory();
 		if (options.flatten()) {
 			options.reporter().flattening(circuit);
+			final long start = System.nanoTime();
 			final BooleanValue flatCircuit = BooleanFormulaFlattener.flatten(circuit, factory);
+			timed(MinStatistics.Phase.FLATTENING, start);
 			if (flatCircuit.op()==Operator.CONST) {
 				throw new TrivialFormulaException(annotated.node(), bounds, (BooleanConstant)flatCircuit, null);
 			} else {
@@ -405,8 +445,11 @@ public final class MinTranslator {
 	 */
 	private MinTranslation toCNF(BooleanFormula fmlaCircuit, BooleanValue sbpValue, int primaryVars, Map<Relation,IntSet> varUsage, MinSymmetryBreaker breaker) {	
 		options.reporter().translatingToCNF(fmlaCircuit);			
+		final long start = System.nanoTime();
 		final MinSATSolver cnf = MinBool2CNFTranslator.translate((BooleanFormula)fmlaCircuit, sbpValue, options.solver(), primaryVars);		
-		return new MinTranslation(cnf, bounds, varUsage, primaryVars, log, breaker.getSymmetries(), breaker.brokenPermutations, sbpValue);
+		timed(MinStatistics.Phase.TRANSLATION_TO_CNF, start);
+		return new MinTranslation(cnf, bounds, varUsage, primaryVars, log, breaker.getSymmetries(), breaker.brokenPermutations, sbpValue,
+				phaseNanos, phaseCounts);
 	}
 	
 }
\ No newline at end of file
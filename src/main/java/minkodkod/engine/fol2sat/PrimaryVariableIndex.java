@@ -0,0 +1,130 @@
+package minkodkod.engine.fol2sat;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import kodkod.ast.Relation;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+
+// ALUMINUM: New class. Lets the propositional and relational views be translated into each
+// other in constant time, without materializing upper bounds on every lookup.
+
+/**
+ * A bidirectional index between the primary variables of a {@link MinTranslation} and
+ * the relational facts (relation, tuple) they stand for. Variables are allocated the
+ * same way {@link LeafInterpreter} allocates them: one per tuple in the upper bound
+ * but not the lower bound of a relation, in increasing order of tuple index.
+ *
+ * var -> fact is kept in flat arrays indexed by variable; fact -> var in an
+ * open-addressing hash table keyed by (relation number, tuple index). No lookup allocates.
+ */
+public final class PrimaryVariableIndex {
+	private final Relation[] relations;
+	private final Map<Relation, Integer> relationNumbers;
+	/* relationOfVar[var] is the position of var's relation in relations; tupleOfVar[var] is its tuple's index */
+	private final int[] relationOfVar;
+	private final int[] tupleOfVar;
+
+	/* open-addressing table: keys[i] = (relation number << 32 | tuple index), or EMPTY; vars[i] the variable */
+	private static final long EMPTY = -1L;
+	private final long[] keys;
+	private final int[] vars;
+	private final int mask;
+
+	/**
+	 * Builds the index for the given translation data.
+	 * @requires varUsage and numPrimaryVariables are those of a translation w.r.t. bounds
+	 */
+	PrimaryVariableIndex(Bounds bounds, Map<Relation, IntSet> varUsage, int numPrimaryVariables) {
+		this.relations = new Relation[varUsage.size()];
+		this.relationNumbers = new IdentityHashMap<Relation, Integer>();
+		this.relationOfVar = new int[numPrimaryVariables + 1];
+		this.tupleOfVar = new int[numPrimaryVariables + 1];
+
+		int capacity = 2;
+		while(capacity < 2 * numPrimaryVariables)
+			capacity <<= 1;
+		this.keys = new long[capacity];
+		this.vars = new int[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(keys, EMPTY);
+
+		int relationNumber = 0;
+		for(Relation r : bounds.relations()) {
+			IntSet varsForR = varUsage.get(r);
+			if(varsForR == null || varsForR.isEmpty())
+				continue;
+
+			relations[relationNumber] = r;
+			relationNumbers.put(r, relationNumber);
+			IntSet lower = bounds.lowerBound(r).indexView();
+			TupleSet upper = bounds.upperBound(r);
+			int lit = varsForR.min();
+			for(IntIterator iter = upper.indexView().iterator(); iter.hasNext();) {
+				final int tupleIndex = iter.next();
+				if(lower.contains(tupleIndex))
+					continue;
+				relationOfVar[lit] = relationNumber;
+				tupleOfVar[lit] = tupleIndex;
+				put(key(relationNumber, tupleIndex), lit);
+				lit++;
+			}
+			relationNumber++;
+		}
+	}
+
+	private static long key(int relationNumber, int tupleIndex) {
+		return ((long)relationNumber << 32) | (tupleIndex & 0xFFFFFFFFL);
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	private void put(long key, int var) {
+		int slot = hash(key) & mask;
+		while(keys[slot] != EMPTY)
+			slot = (slot + 1) & mask;
+		keys[slot] = key;
+		vars[slot] = var;
+	}
+
+	/**
+	 * Returns the primary variable standing for the tuple with the given index in r,
+	 * or -1 if there is none (r has no primary variables, or the tuple is not in
+	 * its upper bound, or is in its lower bound).
+	 */
+	public int variable(Relation r, int tupleIndex) {
+		final Integer relationNumber = relationNumbers.get(r);
+		if(relationNumber == null)
+			return -1;
+
+		final long key = key(relationNumber, tupleIndex);
+		for(int slot = hash(key) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if(keys[slot] == key)
+				return vars[slot];
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the relation of the given primary variable.
+	 * @requires 1 <= var <= number of primary variables
+	 */
+	public Relation relation(int var) {
+		return relations[relationOfVar[var]];
+	}
+
+	/**
+	 * Returns the index (in the universe's tuple factory) of the tuple of the given primary variable.
+	 * @requires 1 <= var <= number of primary variables
+	 */
+	public int tupleIndex(int var) {
+		return tupleOfVar[var];
+	}
+}
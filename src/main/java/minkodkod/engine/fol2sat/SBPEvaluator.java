@@ -0,0 +1,193 @@
+package minkodkod.engine.fol2sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import kodkod.engine.bool.BooleanFormula;
+import kodkod.engine.bool.Operator;
+
+// ALUMINUM: New class. Replaces the recursive BooleanFormulaEvaluator, which did not memoize
+// shared sub-gates and so evaluated the SBP circuit (a DAG) as a tree.
+
+/**
+ * Evaluates the symmetry-breaking predicate's Boolean circuit on a model of the primary
+ * variables. The circuit is compiled once into flat arrays, gates in topological order,
+ * and each evaluation computes every gate exactly once, over long[] bitsets of the model
+ * and of the gate values. Evaluation does not allocate.
+ *
+ * We can't just check the SBP clauses: minimal models are produced with the SBP *off*,
+ * so the SBP's secondary variables in the model mean nothing. The circuit only mentions
+ * primary variables.
+ */
+final class SBPEvaluator {
+	private static final int AND = 0, OR = 1, ITE = 2;
+
+	/* An operand is coded as a signed reference (negative if negated): references below
+	 * base are variables, the others are base + the number of a gate. */
+	private final int base;
+	private final int root;
+	/* gate g's operator is ops[g]; its operands are inputs[firstInput[g]..firstInput[g+1]) */
+	private final int[] ops;
+	private final int[] firstInput;
+	private final int[] inputs;
+
+	/* bitsets of the variables true in the model and the gates true under it */
+	private final long[] model;
+	private final long[] gates;
+
+	/**
+	 * Compiles the given circuit.
+	 */
+	SBPEvaluator(BooleanFormula circuit) {
+		// Post-order traversal, with an explicit stack since the circuit can be deep.
+		final Map<Integer, Integer> gateNumbers = new HashMap<Integer, Integer>();
+		final List<BooleanFormula> order = new ArrayList<BooleanFormula>();
+		final List<BooleanFormula> stack = new ArrayList<BooleanFormula>();
+		int maxVariable = 0;
+
+		stack.add(positive(circuit));
+		while(!stack.isEmpty()) {
+			final BooleanFormula top = stack.get(stack.size() - 1);
+			if(top.op() == Operator.VAR) {
+				maxVariable = Math.max(maxVariable, top.label());
+				stack.remove(stack.size() - 1);
+				continue;
+			}
+			if(gateNumbers.containsKey(top.label())) {
+				stack.remove(stack.size() - 1);
+				continue;
+			}
+
+			boolean ready = true;
+			for(int i = 0; i < top.size(); i++) {
+				final BooleanFormula input = positive(top.input(i));
+				if(input.op() == Operator.VAR)
+					maxVariable = Math.max(maxVariable, input.label());
+				else if(!gateNumbers.containsKey(input.label())) {
+					stack.add(input);
+					ready = false;
+				}
+			}
+
+			if(ready) {
+				stack.remove(stack.size() - 1);
+				gateNumbers.put(top.label(), order.size());
+				order.add(top);
+			}
+		}
+
+		this.base = maxVariable + 1;
+		this.ops = new int[order.size()];
+		this.firstInput = new int[order.size() + 1];
+		int numInputs = 0;
+		for(BooleanFormula gate : order)
+			numInputs += gate.size();
+		this.inputs = new int[numInputs];
+
+		int next = 0;
+		for(int g = 0; g < order.size(); g++) {
+			final BooleanFormula gate = order.get(g);
+			final Operator op = gate.op();
+			if(op == Operator.AND) ops[g] = AND;
+			else if(op == Operator.OR) ops[g] = OR;
+			else if(op == Operator.ITE) ops[g] = ITE;
+			else throw new UnsupportedOperationException("SBPEvaluator encountered op = "+op);
+
+			firstInput[g] = next;
+			for(int i = 0; i < gate.size(); i++)
+				inputs[next++] = code(gate.input(i), gateNumbers);
+		}
+		firstInput[order.size()] = next;
+
+		this.root = code(circuit, gateNumbers);
+		this.model = new long[(base >>> 6) + 1];
+		this.gates = new long[(order.size() >>> 6) + 1];
+	}
+
+	/**
+	 * Strips any negations off the given formula.
+	 */
+	private static BooleanFormula positive(BooleanFormula f) {
+		while(f.op() == Operator.NOT)
+			f = f.input(0);
+		return f;
+	}
+
+	private int code(BooleanFormula f, Map<Integer, Integer> gateNumbers) {
+		boolean negated = false;
+		while(f.op() == Operator.NOT) {
+			negated = !negated;
+			f = f.input(0);
+		}
+		final int reference = (f.op() == Operator.VAR) ? f.label() : base + gateNumbers.get(f.label());
+		return negated ? -reference : reference;
+	}
+
+	/**
+	 * Returns true if the circuit holds in the given model: the positive literals in it
+	 * are the true variables.
+	 */
+	synchronized boolean satisfiedBy(int[] propositionalModel) {
+		Arrays.fill(model, 0L);
+		for(int lit : propositionalModel) {
+			if(lit > 0 && lit < base)
+				model[lit >>> 6] |= 1L << lit;
+		}
+		return evaluate();
+	}
+
+	/**
+	 * Returns true if the circuit holds in the model whose positive diagram is negated by
+	 * the given clause: the variables of its negative literals are the true ones.
+	 */
+	synchronized boolean satisfiedByNegationOf(Iterable<Integer> negatedModel) {
+		Arrays.fill(model, 0L);
+		for(int lit : negatedModel) {
+			if(lit < 0 && -lit < base)
+				model[-lit >>> 6] |= 1L << -lit;
+		}
+		return evaluate();
+	}
+
+	private boolean evaluate() {
+		for(int g = 0; g < ops.length; g++) {
+			final int from = firstInput[g], to = firstInput[g + 1];
+			boolean value;
+			switch(ops[g]) {
+			case AND:
+				value = true;
+				for(int i = from; i < to && value; i++)
+					value = value(inputs[i]);
+				break;
+			case OR:
+				value = false;
+				for(int i = from; i < to && !value; i++)
+					value = value(inputs[i]);
+				break;
+			default: // ITE: 0 ? 1 : 2
+				value = value(inputs[from]) ? value(inputs[from + 1]) : value(inputs[from + 2]);
+			}
+
+			if(value)
+				gates[g >>> 6] |= 1L << g;
+			else
+				gates[g >>> 6] &= ~(1L << g);
+		}
+		return value(root);
+	}
+
+	private boolean value(int code) {
+		final int reference = code < 0 ? -code : code;
+		final boolean value;
+		if(reference < base)
+			value = (model[reference >>> 6] & (1L << reference)) != 0;
+		else {
+			final int g = reference - base;
+			value = (gates[g >>> 6] & (1L << g)) != 0;
+		}
+		return code < 0 ? !value : value;
+	}
+}
@@ -0,0 +1,178 @@
+package test.fol2sat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import kodkod.ast.Decl;
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.config.AbstractReporter;
+import kodkod.engine.config.Options;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntBitSet;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.Ints;
+import minkodkod.MinSATSolverFactory;
+import minkodkod.engine.fol2sat.MinTranslation;
+import minkodkod.engine.fol2sat.MinTranslator;
+import minkodkod.engine.fol2sat.PrimaryVariableIndex;
+import minkodkod.engine.fol2sat.TrivialFormulaException;
+import test.generator.GeneratedSpec;
+import test.generator.SpecGenerator;
+
+// ALUMINUM: New class. Checks PrimaryVariableIndex against the translation it indexes.
+
+/**
+ * Translates generated specs, with a top-level existential added so that they have
+ * skolem relations, and checks that the PrimaryVariableIndex of each translation agrees
+ * with MinTranslation.primaryVariables() on every primary variable, and with
+ * MinTranslation.interpret() on the solver's model and on random sets of true variables.
+ * Throws an AssertionError at the first disagreement.
+ * <p>
+ * Usage: PrimaryVariableIndexCheck [scale [seeds]]
+ */
+public final class PrimaryVariableIndexCheck {
+	private PrimaryVariableIndexCheck() {}
+
+	public static void main(String[] args) throws Exception {
+		final int scale = (args.length > 0) ? Integer.parseInt(args[0]) : 2;
+		final int seeds = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+		int checked = 0;
+		for(SpecGenerator.Case which : SpecGenerator.Case.values()) {
+			for(int seed = 0; seed < seeds; seed++) {
+				final SpecGenerator generator = new SpecGenerator();
+				generator.setScale(scale);
+				generator.setSeed(seed);
+				if(check(generator.generate(which), seed))
+					checked++;
+			}
+		}
+		System.out.println("PrimaryVariableIndexCheck: " + checked + " translations agree");
+	}
+
+	/**
+	 * Checks the translation of the given spec, plus an existential over its universe.
+	 * @return false if the formula was trivial, so there was nothing to check
+	 */
+	private static boolean check(GeneratedSpec spec, long seed) {
+		final SkolemReporter reporter = new SkolemReporter();
+		final Options options = new Options();
+		options.setSolver(new MinSATSolverFactory());
+		options.setReporter(reporter);
+		options.setSymmetryBreaking(20);
+
+		// Skolemized into a relation of its own, with a primary variable per atom.
+		final Variable witness = Variable.unary("witness");
+		final Formula formula = spec.formula().and(witness.in(Expression.UNIV).forSome(witness.oneOf(Expression.UNIV)));
+
+		final MinTranslation translation;
+		try {
+			translation = MinTranslator.translate(formula, spec.bounds(), options);
+		} catch(TrivialFormulaException e) {
+			return false;
+		}
+		final Bounds bounds = reporter.bounds;
+		final PrimaryVariableIndex index = translation.primaryIndex();
+		final int primary = translation.numPrimaryVariables();
+
+		// var -> fact and fact -> var, for every primary variable of every relation.
+		final boolean[] seen = new boolean[primary + 1];
+		boolean skolemized = false;
+		for(Relation r : bounds.relations()) {
+			final IntSet vars = translation.primaryVariables(r);
+			if(vars == null || vars.isEmpty())
+				continue;
+			skolemized |= reporter.skolems.contains(r);
+			final IntSet lower = bounds.lowerBound(r).indexView();
+			int var = vars.min();
+			for(IntIterator iter = bounds.upperBound(r).indexView().iterator(); iter.hasNext();) {
+				final int tupleIndex = iter.next();
+				if(lower.contains(tupleIndex))
+					continue;
+				check(vars.contains(var), spec, r + ": variable " + var + " not in primaryVariables()");
+				check(index.variable(r, tupleIndex) == var, spec, r + ": tuple " + tupleIndex + " indexed as " + index.variable(r, tupleIndex) + ", not " + var);
+				check(index.relation(var) == r, spec, "variable " + var + " indexed under " + index.relation(var) + ", not " + r);
+				check(index.tupleIndex(var) == tupleIndex, spec, "variable " + var + " indexed as tuple " + index.tupleIndex(var) + ", not " + tupleIndex);
+				check(!seen[var], spec, "variable " + var + " stands for two facts");
+				seen[var] = true;
+				var++;
+			}
+			check(var == vars.max() + 1, spec, r + ": " + vars.size() + " variables for " + (var - vars.min()) + " facts");
+			for(IntIterator iter = lower.iterator(); iter.hasNext();)
+				check(index.variable(r, iter.next()) == -1, spec, r + ": a tuple of the lower bound has a variable");
+		}
+		for(int var = 1; var <= primary; var++)
+			check(seen[var], spec, "variable " + var + " belongs to no relation");
+		check(skolemized, spec, "no skolem relation has primary variables");
+
+		// The model of the solver, and random sets of true variables, read both ways.
+		if(translation.cnf().solve()) {
+			final IntSet model = new IntBitSet(primary + 1);
+			for(int var = 1; var <= primary; var++) {
+				if(translation.cnf().valueOf(var))
+					model.add(var);
+			}
+			compare(spec, bounds, index, translation.interpret(), model);
+		}
+		final Random random = new Random(seed);
+		for(int round = 0; round < 8; round++) {
+			final IntSet vars = new IntBitSet(primary + 1);
+			for(int var = 1; var <= primary; var++) {
+				if(random.nextBoolean())
+					vars.add(var);
+			}
+			compare(spec, bounds, index, translation.interpret(vars), vars);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks that the given instance holds the lower bounds plus the facts of the given
+	 * true variables, as found through the index.
+	 */
+	private static void compare(GeneratedSpec spec, Bounds bounds, PrimaryVariableIndex index, Instance instance, IntSet trueVars) {
+		for(Relation r : bounds.relations()) {
+			final TupleSet lower = bounds.lowerBound(r);
+			final IntSet tuples = Ints.bestSet(lower.capacity());
+			tuples.addAll(lower.indexView());
+			for(IntIterator iter = trueVars.iterator(); iter.hasNext();) {
+				final int var = iter.next();
+				if(index.relation(var) == r)
+					tuples.add(index.tupleIndex(var));
+			}
+			final TupleSet expected = bounds.universe().factory().setOf(r.arity(), tuples);
+			final TupleSet got = instance.tuples(r);
+			check(expected.equals(got), spec, r + " interpreted as " + got + ", index gives " + expected);
+		}
+	}
+
+	private static void check(boolean condition, GeneratedSpec spec, String message) {
+		if(!condition)
+			throw new AssertionError(spec.name() + ": " + message);
+	}
+
+	/**
+	 * Keeps the bounds the formula is translated against (which include the skolem
+	 * relations) and the skolem relations.
+	 */
+	private static final class SkolemReporter extends AbstractReporter {
+		Bounds bounds = null;
+		final List<Relation> skolems = new ArrayList<Relation>();
+
+		@Override
+		public void skolemizing(Decl decl, Relation skolem, List<Decl> context) {
+			skolems.add(skolem);
+		}
+
+		@Override
+		public void translatingToBoolean(Formula formula, Bounds bounds) {
+			this.bounds = bounds;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package test.generator;
+
+import java.util.Collections;
+import java.util.List;
+
+import kodkod.ast.Formula;
+import kodkod.instance.Bounds;
+import test.translator.TranslateKodkodToJava;
+
+// ALUMINUM: New class. One output of SpecGenerator.
+
+/**
+ * A formula and bounds built by {@link SpecGenerator}, with the parameters that produced
+ * them in its name. Available as in-memory objects, or as the source of a Java program
+ * that rebuilds and solves them.
+ */
+public final class GeneratedSpec {
+	private final String name;
+	private final Formula formula;
+	private final Bounds bounds;
+	private final List<String> atoms;
+	private final int primaryVariables;
+
+	GeneratedSpec(String name, Formula formula, Bounds bounds, List<String> atoms, int primaryVariables) {
+		this.name = name;
+		this.formula = formula;
+		this.bounds = bounds;
+		this.atoms = Collections.unmodifiableList(atoms);
+		this.primaryVariables = primaryVariables;
+	}
+
+	/**
+	 * Returns a name for this spec that records its case and parameters.
+	 */
+	public String name() {
+		return name;
+	}
+
+	public Formula formula() {
+		return formula;
+	}
+
+	public Bounds bounds() {
+		return bounds;
+	}
+
+	/**
+	 * Returns the atoms of the universe, in order.
+	 */
+	public List<String> atoms() {
+		return atoms;
+	}
+
+	/**
+	 * Returns the number of tuples in upper but not lower bounds, i.e., the number of
+	 * primary variables a translation of this spec will have.
+	 */
+	public int primaryVariables() {
+		return primaryVariables;
+	}
+
+	/**
+	 * Returns the source of a Java program that rebuilds this spec and solves it
+	 * (see {@link TranslateKodkodToJava#convert}).
+	 */
+	public String toJava() {
+		return TranslateKodkodToJava.convert(formula, 4, atoms, bounds, null);
+	}
+
+	public String toString() {
+		return name + " (" + atoms.size() + " atoms, " + primaryVariables + " primary variables)";
+	}
+}
@@ -0,0 +1,407 @@
+package test.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.instance.Bounds;
+import kodkod.instance.Tuple;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+
+// ALUMINUM: New class. Scalable, reproducible inputs for stress-testing and benchmarking
+// minimal-model enumeration.
+
+/**
+ * Builds Kodkod formula and bounds pairs for a few families of specs, with tunable size
+ * and shape. Every case has a backbone sig (or two) whose atoms are told apart by fixed,
+ * randomly generated relations, and some number of fully symmetric sigs that the
+ * relations to solve for range over:
+ * <ul>
+ * <li>GRAPH_COLOURING: a random directed graph on Node; each required node gets a colour
+ * from every palette (the symmetric sigs), and nodes joined by a path of the given length
+ * share no colour.</li>
+ * <li>ACCESS_CONTROL: Subjects need (fixed, random) permissions on Resources, and get them
+ * through membership in roles (the symmetric sigs), which grant permissions. A subject
+ * must also hold what its delegates, down to the given depth, need.</li>
+ * <li>CONFIGURATION: a random dependency DAG and conflict relation on Features; mandatory
+ * features are selected, selections are closed under dependency chains of the given length,
+ * and every selected feature is deployed on components (the symmetric sigs), never on
+ * the same component as a conflicting feature.</li>
+ * </ul>
+ *
+ * Parameters:
+ * <ul>
+ * <li>atoms per sig, directly or by scale: setScale(k) picks the number of atoms so
+ * that the relation solved for has about k times the primary variables of
+ * resources/test.als (4);</li>
+ * <li>arity of the relations solved for (at least 2; extra columns range over the
+ * same sig as the last one);</li>
+ * <li>number of symmetric sigs (at least 1);</li>
+ * <li>quantifier nesting: the number of steps along the backbone relation the main
+ * constraint follows, which nests that many quantifiers plus one;</li>
+ * <li>density: the probability of each tuple in the fixed random relations, including
+ * the set of atoms an existential fact is required for;</li>
+ * <li>seed of the random relations. The same parameters always give the same spec.</li>
+ * </ul>
+ *
+ * Run main() to print the Java program for a spec.
+ */
+public final class SpecGenerator {
+	/** The families of specs. */
+	public static enum Case { GRAPH_COLOURING, ACCESS_CONTROL, CONFIGURATION }
+
+	/** Primary variables of resources/test.als, which setScale is relative to. */
+	private static final int TEST_ALS_VARIABLES = 4;
+
+	private int scale = 1;
+	private int atomsPerSig = 0;
+	private int arity = 2;
+	private int symmetricSigs = 1;
+	private int quantifierNesting = 1;
+	private double density = 0.3;
+	private long seed = 0;
+
+	/**
+	 * Sets the size so that the relation solved for has about scale times the primary
+	 * variables of resources/test.als. Overrides setAtomsPerSig.
+	 */
+	public void setScale(int scale) {
+		if(scale < 1)
+			throw new IllegalArgumentException("scale must be positive: " + scale);
+		this.scale = scale;
+		this.atomsPerSig = 0;
+	}
+
+	/**
+	 * Sets the number of atoms in every sig. Overrides setScale.
+	 */
+	public void setAtomsPerSig(int atomsPerSig) {
+		if(atomsPerSig < 2)
+			throw new IllegalArgumentException("need at least 2 atoms per sig: " + atomsPerSig);
+		this.atomsPerSig = atomsPerSig;
+	}
+
+	/**
+	 * Returns the number of atoms in every sig: as set, or as derived from the scale.
+	 */
+	public int atomsPerSig() {
+		if(atomsPerSig > 0)
+			return atomsPerSig;
+		return Math.max(2, (int) Math.round(Math.pow(TEST_ALS_VARIABLES * (double) scale, 1.0 / arity)));
+	}
+
+	public void setArity(int arity) {
+		if(arity < 2)
+			throw new IllegalArgumentException("arity must be at least 2: " + arity);
+		this.arity = arity;
+	}
+
+	public int arity() {
+		return arity;
+	}
+
+	public void setSymmetricSigs(int symmetricSigs) {
+		if(symmetricSigs < 1)
+			throw new IllegalArgumentException("need at least one symmetric sig: " + symmetricSigs);
+		this.symmetricSigs = symmetricSigs;
+	}
+
+	public int symmetricSigs() {
+		return symmetricSigs;
+	}
+
+	public void setQuantifierNesting(int quantifierNesting) {
+		if(quantifierNesting < 1)
+			throw new IllegalArgumentException("quantifier nesting must be positive: " + quantifierNesting);
+		this.quantifierNesting = quantifierNesting;
+	}
+
+	public int quantifierNesting() {
+		return quantifierNesting;
+	}
+
+	public void setDensity(double density) {
+		if(density <= 0 || density > 1)
+			throw new IllegalArgumentException("density must be in (0, 1]: " + density);
+		this.density = density;
+	}
+
+	public double density() {
+		return density;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public long seed() {
+		return seed;
+	}
+
+	/**
+	 * Builds the spec for the given case with the current parameters.
+	 */
+	public GeneratedSpec generate(Case which) {
+		switch(which) {
+		case GRAPH_COLOURING: return new Builder(which, "Node", "Palette").graphColouring();
+		case ACCESS_CONTROL: return new Builder(which, "Subject", "Resource", "Role").accessControl();
+		default: return new Builder(which, "Feature", "Component").configuration();
+		}
+	}
+
+	/**
+	 * Builds one spec. The backbone sigs come first; the last sig name is the prefix of
+	 * the symmetric sigs.
+	 */
+	private final class Builder {
+		private final Case which;
+		private final int n = atomsPerSig();
+		private final Random random = new Random(seed);
+		private final List<String> atoms = new ArrayList<String>();
+		private final String[] backbone;
+		private final String symmetricPrefix;
+		private Universe universe;
+		private TupleFactory factory;
+		private Bounds bounds;
+		private int primaryVariables = 0;
+
+		Builder(Case which, String... sigNames) {
+			this.which = which;
+			this.backbone = new String[sigNames.length - 1];
+			System.arraycopy(sigNames, 0, backbone, 0, backbone.length);
+			this.symmetricPrefix = sigNames[sigNames.length - 1];
+
+			for(String sig : backbone)
+				addAtoms(sig);
+			for(int i = 0; i < symmetricSigs; i++)
+				addAtoms(symmetricPrefix + i);
+			this.universe = new Universe(atoms);
+			this.factory = universe.factory();
+			this.bounds = new Bounds(universe);
+		}
+
+		private void addAtoms(String sig) {
+			for(int i = 0; i < n; i++)
+				atoms.add(sig + "$" + i);
+		}
+
+		/** Returns the atoms of the given sig as a unary tuple set. */
+		private TupleSet atomsOf(String sig) {
+			return factory.range(factory.tuple(sig + "$0"), factory.tuple(sig + "$" + (n - 1)));
+		}
+
+		/** Declares a sig, exactly bounded. */
+		private Relation sig(String name) {
+			Relation r = Relation.unary("this/" + name);
+			bounds.boundExactly(r, atomsOf(name));
+			return r;
+		}
+
+		/** Declares a relation to solve for, bounded above by the given tuples. */
+		private Relation free(String name, TupleSet upper) {
+			Relation r = Relation.nary("this/" + name, upper.arity());
+			bounds.bound(r, upper);
+			primaryVariables += upper.size();
+			return r;
+		}
+
+		/** Declares a fixed relation holding each of the given tuples with probability density. */
+		private Relation fixed(String name, TupleSet candidates, boolean irreflexive, boolean ascending) {
+			TupleSet chosen = factory.noneOf(candidates.arity());
+			for(Tuple t : candidates) {
+				if(irreflexive && t.atom(0).equals(t.atom(t.arity() - 1)))
+					continue;
+				if(ascending && t.atomIndex(0) >= t.atomIndex(t.arity() - 1))
+					continue;
+				if(random.nextDouble() < density)
+					chosen.add(t);
+			}
+			Relation r = Relation.nary("this/" + name, candidates.arity());
+			bounds.boundExactly(r, chosen);
+			return r;
+		}
+
+		/** Returns base -> last -> ... -> last, with arity - 1 copies of last. */
+		private TupleSet power(TupleSet base, TupleSet last) {
+			TupleSet result = base;
+			for(int i = 1; i < arity; i++)
+				result = result.product(last);
+			return result;
+		}
+
+		/**
+		 * Returns all x0: domain | all x1: x0.step | ... | all xd: x(d-1).step | body(x0, xd),
+		 * where d is the quantifier nesting.
+		 */
+		private Formula chain(Expression domain, Expression step, Body body) {
+			Variable[] xs = new Variable[quantifierNesting + 1];
+			for(int i = 0; i < xs.length; i++)
+				xs[i] = Variable.unary("x" + i);
+
+			Formula result = body.of(xs[0], xs[xs.length - 1]);
+			for(int i = xs.length - 1; i > 0; i--)
+				result = result.forAll(xs[i].oneOf(xs[i - 1].join(step)));
+			return result.forAll(xs[0].oneOf(domain));
+		}
+
+		private GeneratedSpec graphColouring() {
+			final Relation node = sig("Node");
+			final Relation edge = fixed("Node.edge", atomsOf("Node").product(atomsOf("Node")), true, false);
+			final Relation required = fixed("Required", atomsOf("Node"), false, false);
+
+			final List<Relation> colours = new ArrayList<Relation>();
+			List<Formula> constraints = new ArrayList<Formula>();
+			for(int i = 0; i < symmetricSigs; i++) {
+				Relation palette = sig(symmetricPrefix + i);
+				Relation colour = free("Node.colour" + i, power(atomsOf("Node"), atomsOf(symmetricPrefix + i)));
+				constraints.add(colour.in(product(node, palette)));
+				colours.add(colour);
+			}
+
+			// Existential facts: every required node has some colour.
+			Variable x = Variable.unary("x");
+			constraints.add(Expression.union(joins(x, colours)).some().forAll(x.oneOf(required)));
+
+			// Nodes joined by a path of the given length share no colour.
+			constraints.add(chain(node, edge, new Body() {
+				public Formula of(Variable first, Variable last) {
+					List<Formula> disjoint = new ArrayList<Formula>();
+					for(Relation colour : colours)
+						disjoint.add(first.join(colour).intersection(last.join(colour)).no());
+					return first.eq(last).not().implies(Formula.and(disjoint));
+				}
+			}));
+
+			return spec(Formula.and(constraints));
+		}
+
+		private GeneratedSpec accessControl() {
+			final Relation subject = sig("Subject");
+			final Relation resource = sig("Resource");
+			final Relation needs = fixed("Subject.needs", power(atomsOf("Subject"), atomsOf("Resource")), false, false);
+			final Relation delegates = fixed("Subject.delegates", atomsOf("Subject").product(atomsOf("Subject")), true, false);
+
+			final List<Expression> perms = new ArrayList<Expression>();
+			final List<Formula> constraints = new ArrayList<Formula>();
+			final Variable s = Variable.unary("s");
+			for(int i = 0; i < symmetricSigs; i++) {
+				Relation role = sig(symmetricPrefix + i);
+				Relation member = free("Subject.member" + i, atomsOf("Subject").product(atomsOf(symmetricPrefix + i)));
+				Relation grant = free(symmetricPrefix + i + ".grant", power(atomsOf(symmetricPrefix + i), atomsOf("Resource")));
+				constraints.add(member.in(subject.product(role)));
+				constraints.add(grant.in(product(role, resource)));
+				perms.add(member.join(grant));
+			}
+
+			// Existential facts: each needed permission is granted by some role of the subject's.
+			final Expression permissions = Expression.union(perms);
+			constraints.add(s.join(needs).in(s.join(permissions)).forAll(s.oneOf(subject)));
+
+			// A subject also holds what its delegates, down to the given depth, need.
+			constraints.add(chain(subject, delegates, new Body() {
+				public Formula of(Variable first, Variable last) {
+					return last.join(needs).in(first.join(permissions));
+				}
+			}));
+
+			return spec(Formula.and(constraints));
+		}
+
+		private GeneratedSpec configuration() {
+			final Relation feature = sig("Feature");
+			final Relation requires = fixed("Feature.requires", atomsOf("Feature").product(atomsOf("Feature")), true, true);
+			final Relation conflicts = fixed("Feature.conflicts", atomsOf("Feature").product(atomsOf("Feature")), true, true);
+			final Relation mandatory = fixed("Mandatory", atomsOf("Feature"), false, false);
+			final Relation selected = free("Selected", atomsOf("Feature"));
+
+			final List<Relation> deploys = new ArrayList<Relation>();
+			final List<Formula> constraints = new ArrayList<Formula>();
+			for(int i = 0; i < symmetricSigs; i++) {
+				Relation component = sig(symmetricPrefix + i);
+				Relation deploy = free("Feature.deploy" + i, power(atomsOf("Feature"), atomsOf(symmetricPrefix + i)));
+				constraints.add(deploy.in(product(feature, component)));
+				deploys.add(deploy);
+			}
+
+			constraints.add(selected.in(feature));
+			constraints.add(mandatory.in(selected));
+
+			// Selections are closed under dependency chains of the given length.
+			constraints.add(chain(selected, requires, new Body() {
+				public Formula of(Variable first, Variable last) {
+					return last.in(selected);
+				}
+			}));
+
+			// Existential facts: every selected feature is deployed somewhere.
+			Variable f = Variable.unary("f");
+			constraints.add(Expression.union(joins(f, deploys)).some().forAll(f.oneOf(selected)));
+
+			// Conflicting features are never deployed on the same component.
+			Variable g = Variable.unary("g");
+			List<Formula> apart = new ArrayList<Formula>();
+			for(Relation deploy : deploys)
+				apart.add(f.join(deploy).intersection(g.join(deploy)).no());
+			constraints.add(Formula.and(apart).forAll(g.oneOf(f.join(conflicts))).forAll(f.oneOf(feature)));
+
+			return spec(Formula.and(constraints));
+		}
+
+		/** Returns base -> last -> ... -> last, with arity - 1 copies of last. */
+		private Expression product(Expression base, Expression last) {
+			Expression result = base;
+			for(int i = 1; i < arity; i++)
+				result = result.product(last);
+			return result;
+		}
+
+		private List<Expression> joins(Variable x, List<Relation> relations) {
+			List<Expression> result = new ArrayList<Expression>();
+			for(Relation r : relations)
+				result.add(x.join(r));
+			return result;
+		}
+
+		private GeneratedSpec spec(Formula formula) {
+			String name = String.format(Locale.ROOT, "%s_n%d_a%d_s%d_q%d_d%.2f_seed%d",
+					which.name().toLowerCase(Locale.ROOT), n, arity, symmetricSigs, quantifierNesting, density, seed);
+			return new GeneratedSpec(name, formula, bounds, atoms, primaryVariables);
+		}
+	}
+
+	/** The body of a constraint built by Builder.chain. */
+	private static interface Body {
+		Formula of(Variable first, Variable last);
+	}
+
+	/**
+	 * Prints the Java program for a spec.
+	 * Usage: SpecGenerator case scale [arity [symmetricSigs [quantifierNesting [density [seed]]]]]
+	 * where case is one of GRAPH_COLOURING, ACCESS_CONTROL, CONFIGURATION.
+	 */
+	public static void main(String[] args) {
+		if(args.length < 2) {
+			System.err.println("Usage: SpecGenerator case scale [arity [symmetricSigs [quantifierNesting [density [seed]]]]]");
+			System.exit(1);
+		}
+
+		SpecGenerator generator = new SpecGenerator();
+		if(args.length > 2) generator.setArity(Integer.parseInt(args[2]));
+		generator.setScale(Integer.parseInt(args[1]));
+		if(args.length > 3) generator.setSymmetricSigs(Integer.parseInt(args[3]));
+		if(args.length > 4) generator.setQuantifierNesting(Integer.parseInt(args[4]));
+		if(args.length > 5) generator.setDensity(Double.parseDouble(args[5]));
+		if(args.length > 6) generator.setSeed(Long.parseLong(args[6]));
+
+		GeneratedSpec spec = generator.generate(Case.valueOf(args[0]));
+		System.out.println("// " + spec);
+		System.out.print(spec.toJava());
+	}
+}
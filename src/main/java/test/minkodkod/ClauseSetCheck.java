@@ -0,0 +1,143 @@
+package test.minkodkod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import minkodkod.ClauseSet;
+
+// ALUMINUM: New class. Checks the canonical clause set of the SBP.
+
+/**
+ * Checks ClauseSet on hand-made cases (clauses are equal up to order and repeated
+ * literals, tautologies are never added, the table keeps every clause as it grows,
+ * copies are independent), then against a set of sorted literal lists on random
+ * sequences. Throws an AssertionError at the first disagreement.
+ * <p>
+ * Usage: ClauseSetCheck [rounds [seed]]
+ */
+public final class ClauseSetCheck {
+	private ClauseSetCheck() {}
+
+	public static void main(String[] args) {
+		final int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+		final long seed = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+		canonicalization();
+		tautologies();
+		grow();
+		copy();
+		final Random random = new Random(seed);
+		for(int round = 0; round < rounds; round++)
+			againstBruteForce(random);
+		System.out.println("ClauseSetCheck: hand-made cases and " + rounds + " random sequences agree");
+	}
+
+	/** Clauses equal up to the order and repetition of their literals are one clause. */
+	private static void canonicalization() {
+		final ClauseSet set = new ClauseSet();
+		check(set.add(new int[] { 3, -1, 2 }), "first clause not added");
+		check(!set.add(new int[] { -1, 2, 3 }), "same clause in another order added");
+		check(!set.add(new int[] { 2, 3, -1, 3, 2 }), "same clause with repeated literals added");
+		check(set.add(new int[] { 3, 1, 2 }), "clause differing in a sign not added");
+		check(set.add(new int[] { -1, 2 }), "subset not added");
+		check(set.add(new int[] { -1, 2, 3, 4 }), "superset not added");
+		check(set.add(new int[] { 5, 5 }), "unit clause with a repeated literal not added");
+		check(!set.add(new int[] { 5 }), "unit clause added twice");
+		check(set.add(new int[0]), "empty clause not added");
+		check(!set.add(new int[0]), "empty clause added twice");
+		check(set.size() == 6, "size " + set.size() + ", expected 6");
+
+		final int[] lits = { 4, -2, 4 };
+		set.add(lits);
+		check(Arrays.equals(lits, new int[] { 4, -2, 4 }), "add() changed the caller's array: " + Arrays.toString(lits));
+	}
+
+	/** Clauses with a literal and its negation are never added. */
+	private static void tautologies() {
+		final ClauseSet set = new ClauseSet();
+		final int[][] tautologies = { { 1, -1 }, { -3, 2, 3 }, { 2, 4, 4, -2 }, { -5, -6, 7, 6 } };
+		for(int[] clause : tautologies) {
+			check(ClauseSet.isTautology(clause), Arrays.toString(clause) + " is not a tautology");
+			check(!set.add(clause), Arrays.toString(clause) + " added");
+		}
+		check(set.size() == 0, "size " + set.size() + " after tautologies only");
+		final int[][] others = { { 1 }, { -1, -2 }, { 2, 2 }, { -3, 4, -5 }, {} };
+		for(int[] clause : others)
+			check(!ClauseSet.isTautology(clause), Arrays.toString(clause) + " is a tautology");
+	}
+
+	/** Enough clauses to double the table several times, all still found afterwards. */
+	private static void grow() {
+		final ClauseSet set = new ClauseSet();
+		final List<int[]> added = new ArrayList<int[]>();
+		for(int a = 1; a <= 40; a++) {
+			for(int b = a + 1; b <= 40; b++) {
+				final int[] clause = { -a, b, (a * b) % 2 == 0 ? 41 : -41 };
+				check(set.add(clause), Arrays.toString(clause) + " not added");
+				added.add(clause);
+			}
+		}
+		check(set.size() == added.size(), "size " + set.size() + ", expected " + added.size());
+		for(int[] clause : added) {
+			final int[] reversed = new int[clause.length];
+			for(int ii = 0; ii < clause.length; ii++)
+				reversed[ii] = clause[clause.length - 1 - ii];
+			check(!set.add(reversed), Arrays.toString(clause) + " lost as the table grew");
+		}
+		check(set.size() == added.size(), "size " + set.size() + " after re-adding, expected " + added.size());
+	}
+
+	/** A copy has the same clauses, and neither changes with the other. */
+	private static void copy() {
+		final ClauseSet set = new ClauseSet();
+		for(int var = 1; var <= 20; var++)
+			set.add(new int[] { var, -(var + 1) });
+		final ClauseSet copy = set.copy();
+		check(copy.size() == set.size(), "copy has " + copy.size() + " clauses, not " + set.size());
+		check(!copy.add(new int[] { -2, 1 }), "copy lacks a clause of the original");
+		check(copy.add(new int[] { 7, 8 }), "clause not added to the copy");
+		check(set.add(new int[] { 9, 10 }), "clause added to the copy shows up in the original");
+		check(copy.add(new int[] { 9, 10 }), "clause added to the original shows up in the copy");
+		check(set.add(new int[] { 7, 8 }), "clause added to the copy shows up in the original");
+		for(int var = 21; var <= 200; var++)
+			copy.add(new int[] { var, -(var + 1) });
+		check(set.add(new int[] { 100, -101 }), "clause added to the copy as it grew shows up in the original");
+	}
+
+	/**
+	 * Adds random clauses to the set and to a set of sorted literal lists, and checks
+	 * that both agree on what is new, what is a tautology, and how many clauses they hold.
+	 */
+	private static void againstBruteForce(Random random) {
+		final ClauseSet set = new ClauseSet();
+		final Set<List<Integer>> reference = new HashSet<List<Integer>>();
+		final int variables = 2 + random.nextInt(6);
+		for(int step = 0; step < 2000; step++) {
+			final int[] clause = new int[random.nextInt(variables + 1)];
+			for(int ii = 0; ii < clause.length; ii++) {
+				final int var = 1 + random.nextInt(variables);
+				clause[ii] = random.nextBoolean() ? var : -var;
+			}
+			final TreeSet<Integer> lits = new TreeSet<Integer>();
+			for(int lit : clause)
+				lits.add(lit);
+			boolean tautology = false;
+			for(int lit : lits)
+				tautology |= lits.contains(-lit);
+
+			check(ClauseSet.isTautology(clause) == tautology, Arrays.toString(clause) + ": isTautology() is " + !tautology);
+			final boolean added = !tautology && reference.add(new ArrayList<Integer>(lits));
+			check(set.add(clause) == added, Arrays.toString(clause) + ": add() is " + !added);
+			check(set.size() == reference.size(), "size " + set.size() + ", expected " + reference.size());
+		}
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition)
+			throw new AssertionError(message);
+	}
+}
@@ -0,0 +1,231 @@
+package test.minkodkod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import minkodkod.ConeClauseStore;
+
+import org.sat4j.specs.IConstr;
+
+// ALUMINUM: New class. Checks the subsumption logic of ConeClauseStore.
+
+/**
+ * Checks ConeClauseStore on hand-made cases (duplicates and supersets are rejected, a
+ * new clause retires exactly the clauses it subsumes, the empty clause subsumes
+ * everything, clear() hands back every constraint), then against a brute-force list
+ * of clauses on random sequences. Throws an AssertionError at the first disagreement.
+ * <p>
+ * Usage: ConeClauseStoreCheck [rounds [seed]]
+ */
+public final class ConeClauseStoreCheck {
+	private ConeClauseStoreCheck() {}
+
+	public static void main(String[] args) {
+		final int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+		final long seed = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+		rejectsSubsumed();
+		retiresWeaker();
+		emptyClause();
+		clear();
+		final Random random = new Random(seed);
+		for(int round = 0; round < rounds; round++)
+			againstBruteForce(random);
+		System.out.println("ConeClauseStoreCheck: hand-made cases and " + rounds + " random sequences agree");
+	}
+
+	/** A clause already in the store, or a superset of one, is subsumed; nothing else is. */
+	private static void rejectsSubsumed() {
+		final ConeClauseStore store = new ConeClauseStore();
+		final List<IConstr> retired = new ArrayList<IConstr>();
+		add(store, retired, -3, -1, 2);
+		add(store, retired, -5, 4);
+		check(retired.isEmpty(), "unrelated clauses retired each other: " + retired);
+		check(store.subsumes(sorted(-3, -1, 2)), "duplicate not subsumed");
+		check(store.subsumes(sorted(2, -1, -3)), "duplicate in another order not subsumed");
+		check(store.subsumes(sorted(-3, -1, 2, 7)), "superset not subsumed");
+		check(store.subsumes(sorted(-6, -5, 4)), "superset of the second clause not subsumed");
+		check(!store.subsumes(sorted(-3, -1)), "subset subsumed");
+		check(!store.subsumes(sorted(-3, 1, 2)), "clause differing in a sign subsumed");
+		check(!store.subsumes(sorted(-5, 2)), "clause sharing a literal with each subsumed");
+		check(!store.subsumes(sorted()), "empty clause subsumed");
+		check(store.size() == 2, "size " + store.size() + ", expected 2");
+	}
+
+	/** A new clause retires exactly the clauses it is a proper subset of. */
+	private static void retiresWeaker() {
+		final ConeClauseStore store = new ConeClauseStore();
+		final List<IConstr> retired = new ArrayList<IConstr>();
+		add(store, retired, -1, 5);
+		add(store, retired, -2, 5, 7);
+		add(store, retired, -1, 6);
+		add(store, retired, 5, 7, 8);
+		add(store, retired, -3, 6, 7);
+		check(retired.isEmpty(), "no clause subsumes another yet: " + retired);
+
+		add(store, retired, 5, 7);
+		checkRetired(retired, new int[][] { { -2, 5, 7 }, { 5, 7, 8 } });
+		check(store.size() == 4, "size " + store.size() + ", expected 4");
+		check(store.subsumes(sorted(-2, 5, 7)), "retired clause no longer subsumed by the new one");
+
+		retired.clear();
+		add(store, retired, 5);
+		checkRetired(retired, new int[][] { { -1, 5 }, { 5, 7 } });
+		check(store.size() == 3, "size " + store.size() + ", expected 3");
+		check(store.subsumes(sorted(-1, 5)) && store.subsumes(sorted(-9, 5)), "unit clause does not subsume its supersets");
+		check(!store.subsumes(sorted(-1, 7)), "unrelated clause subsumed after retirements");
+		check(store.subsumes(sorted(-1, 6)), "surviving clause lost");
+	}
+
+	/** The empty clause retires everything, and then subsumes everything. */
+	private static void emptyClause() {
+		final ConeClauseStore store = new ConeClauseStore();
+		final List<IConstr> retired = new ArrayList<IConstr>();
+		add(store, retired, -1, 2);
+		add(store, retired, 3);
+		add(store, retired);
+		checkRetired(retired, new int[][] { { -1, 2 }, { 3 } });
+		check(store.size() == 1, "size " + store.size() + ", expected 1");
+		check(store.subsumes(sorted()) && store.subsumes(sorted(-4, 8)), "empty clause does not subsume everything");
+	}
+
+	/** clear() hands back every live constraint, and leaves an empty store behind. */
+	private static void clear() {
+		final ConeClauseStore store = new ConeClauseStore();
+		final List<IConstr> retired = new ArrayList<IConstr>();
+		add(store, retired, -1, 2);
+		add(store, retired, -3, 5);
+		add(store, retired, 4);
+		store.clear(retired);
+		checkRetired(retired, new int[][] { { -1, 2 }, { -3, 5 }, { 4 } });
+		check(store.size() == 0, "size " + store.size() + " after clear()");
+		check(!store.subsumes(sorted(4)) && !store.subsumes(sorted()), "cleared store subsumes");
+
+		retired.clear();
+		add(store, retired, -1, 2);
+		add(store, retired, -1);
+		checkRetired(retired, new int[][] { { -1, 2 } });
+		check(store.size() == 1 && store.subsumes(sorted(-1, 3)), "store not reusable after clear()");
+	}
+
+	/**
+	 * Offers random clauses to the store and to a plain list, adding each that is not
+	 * subsumed, and checks that both agree on what is subsumed and what is retired.
+	 */
+	private static void againstBruteForce(Random random) {
+		final ConeClauseStore store = new ConeClauseStore();
+		final List<int[]> live = new ArrayList<int[]>();
+		final List<IConstr> retired = new ArrayList<IConstr>();
+		final int variables = 3 + random.nextInt(6);
+		for(int step = 0; step < 60; step++) {
+			final int[] clause = randomClause(random, variables);
+			boolean subsumed = false;
+			for(int[] other : live)
+				subsumed |= subset(other, clause);
+			check(store.subsumes(clause) == subsumed, Arrays.toString(clause) + ": subsumes() is " + !subsumed + " over " + toString(live));
+			if(subsumed)
+				continue;
+
+			final List<int[]> weaker = new ArrayList<int[]>();
+			for(int[] other : live) {
+				if(subset(clause, other))
+					weaker.add(other);
+			}
+			live.removeAll(weaker);
+			live.add(clause);
+			retired.clear();
+			store.add(clause, new Marker(clause), retired);
+			checkRetired(retired, weaker.toArray(new int[weaker.size()][]));
+			check(store.size() == live.size(), "size " + store.size() + ", expected " + live.size());
+		}
+	}
+
+	private static int[] randomClause(Random random, int variables) {
+		final int[] lits = new int[random.nextInt(variables) + (random.nextInt(20) == 0 ? 0 : 1)];
+		int length = 0;
+		for(int var = 1; var <= variables && length < lits.length; var++) {
+			if(random.nextInt(variables) < lits.length)
+				lits[length++] = random.nextBoolean() ? var : -var;
+		}
+		return sorted(Arrays.copyOf(lits, length));
+	}
+
+	private static void add(ConeClauseStore store, List<IConstr> retired, int... lits) {
+		final int[] clause = sorted(lits);
+		check(!store.subsumes(clause), Arrays.toString(clause) + " subsumed before it was added");
+		store.add(clause, new Marker(clause), retired);
+	}
+
+	private static int[] sorted(int... lits) {
+		return ConeClauseStore.sorted(lits);
+	}
+
+	/** Checks that the given constraints are those of the given clauses, in any order. */
+	private static void checkRetired(List<IConstr> retired, int[][] expected) {
+		final List<String> got = new ArrayList<String>();
+		for(IConstr constraint : retired)
+			got.add(constraint.toString());
+		final List<String> want = new ArrayList<String>();
+		for(int[] clause : expected)
+			want.add(Arrays.toString(sorted(clause)));
+		Collections.sort(got);
+		Collections.sort(want);
+		check(got.equals(want), "retired " + got + ", expected " + want);
+	}
+
+	/** Returns true if the sorted clause a is a subset of the sorted clause b. */
+	private static boolean subset(int[] a, int[] b) {
+		for(int lit : a) {
+			if(Arrays.binarySearch(b, lit) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static String toString(List<int[]> clauses) {
+		final StringBuilder result = new StringBuilder();
+		for(int[] clause : clauses)
+			result.append(Arrays.toString(clause));
+		return result.toString();
+	}
+
+	private static void check(boolean condition, String message) {
+		if(!condition)
+			throw new AssertionError(message);
+	}
+
+	/** Stands in for a clause's constraint in the solver, and prints as the clause. */
+	private static final class Marker implements IConstr {
+		private final int[] clause;
+
+		Marker(int[] clause) {
+			this.clause = clause;
+		}
+
+		public boolean learnt() {
+			return false;
+		}
+
+		public int size() {
+			return clause.length;
+		}
+
+		public int get(int i) {
+			return clause[i];
+		}
+
+		public double getActivity() {
+			return 0;
+		}
+
+		public boolean canBePropagatedMultipleTimes() {
+			return false;
+		}
+
+		public String toString() {
+			return Arrays.toString(clause);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package test.minkodkod;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import kodkod.engine.config.Options;
+import minkodkod.MinExtraOptions;
+import minkodkod.MinReporterToGatherSkolemBounds;
+import minkodkod.MinSATSolverFactory;
+import minkodkod.MinSolution;
+import minkodkod.MinSolver;
+import test.generator.GeneratedSpec;
+import test.generator.SpecGenerator;
+
+// ALUMINUM: New class. Checks that parallel consistent facts match the serial ones.
+
+/**
+ * Enumerates the first models of generated specs with two MinSolvers, one computing
+ * consistent facts serially and one with several workers (see ParallelConsistentFacts),
+ * and checks that both find the same consistent facts for the models they both find.
+ * Throws an AssertionError at the first disagreement.
+ * <p>
+ * Usage: ParallelConsistentFactsCheck [workers [models [seeds]]]
+ */
+public final class ParallelConsistentFactsCheck {
+	private static final int[] SCALES = { 1, 4, 10 };
+
+	private ParallelConsistentFactsCheck() {}
+
+	public static void main(String[] args) throws Exception {
+		final int workers = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+		final int models = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+		final int seeds = (args.length > 2) ? Integer.parseInt(args[2]) : 2;
+		int checked = 0;
+		for(SpecGenerator.Case which : SpecGenerator.Case.values()) {
+			for(int scale : SCALES) {
+				for(int seed = 0; seed < seeds; seed++) {
+					final SpecGenerator generator = new SpecGenerator();
+					generator.setScale(scale);
+					generator.setSymmetricSigs(2);
+					generator.setDensity(0.2);
+					generator.setSeed(seed);
+					checked += check(generator.generate(which), workers, models);
+				}
+			}
+		}
+		System.out.println("ParallelConsistentFactsCheck: " + checked + " models have the same consistent facts with 1 and " + workers + " workers");
+	}
+
+	/**
+	 * Compares the consistent facts of the first models of the given spec. The searches
+	 * for consistent facts leave the two solvers in different states, so after the first
+	 * model they may find different (e.g. isomorphic) models; those found by both are
+	 * compared.
+	 * @return the number of models compared
+	 */
+	private static int check(GeneratedSpec spec, int workers, int models) throws Exception {
+		final Map<String, String> serialFacts = consistentFacts(spec, 1, models);
+		final Map<String, String> parallelFacts = consistentFacts(spec, workers, models);
+		check(serialFacts.isEmpty() == parallelFacts.isEmpty(), spec, "only one solver found a model");
+		int compared = 0;
+		for(Map.Entry<String, String> entry : serialFacts.entrySet()) {
+			final String facts = parallelFacts.get(entry.getKey());
+			if(facts == null)
+				continue;
+			check(facts.equals(entry.getValue()), spec, "consistent facts of " + entry.getKey() + " differ: " 
+					+ entry.getValue() + " vs " + facts);
+			compared++;
+		}
+		check(compared > 0 || serialFacts.isEmpty(), spec, "the solvers found no model in common");
+		return compared;
+	}
+
+	/**
+	 * Returns the consistent facts of the first models of the given spec, computed with
+	 * the given number of workers, by model.
+	 */
+	private static Map<String, String> consistentFacts(GeneratedSpec spec, int workers, int models) throws Exception {
+		final MinSolver solver = solver(workers);
+		final Iterator<MinSolution> iterator = solver.solveAll(spec.formula(), spec.bounds());
+		final Map<String, String> result = new LinkedHashMap<String, String>();
+		while(result.size() < models && iterator.hasNext()) {
+			final MinSolution model = iterator.next();
+			if(model.instance() == null)
+				break;
+			result.put(model.instance().toString(), String.valueOf(solver.getConsistentFacts(iterator)));
+		}
+		return result;
+	}
+
+	private static MinSolver solver(int workers) {
+		final Options options = new Options();
+		options.setSolver(new MinSATSolverFactory());
+		options.setReporter(new MinReporterToGatherSkolemBounds());
+		options.setSymmetryBreaking(20);
+		final MinExtraOptions extraOptions = new MinExtraOptions();
+		extraOptions.setConsistentFactsWorkers(workers);
+		return new MinSolver(options, extraOptions);
+	}
+
+	private static void check(boolean condition, GeneratedSpec spec, String message) {
+		if(!condition)
+			throw new AssertionError(spec.name() + ": " + message);
+	}
+}